@@ -0,0 +1,11 @@
+package org.garry.transaction.benchmark;
+
+/**
+ * Target interface for interceptor and proxy benchmarks
+ */
+public interface BenchmarkService {
+
+    int update(int value);
+
+    int find(int value);
+}
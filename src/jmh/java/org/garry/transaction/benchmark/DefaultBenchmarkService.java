@@ -0,0 +1,14 @@
+package org.garry.transaction.benchmark;
+
+public class DefaultBenchmarkService implements BenchmarkService {
+
+    @Override
+    public int update(int value) {
+        return value + 1;
+    }
+
+    @Override
+    public int find(int value) {
+        return value;
+    }
+}
@@ -0,0 +1,125 @@
+package org.garry.transaction.benchmark;
+
+import org.garry.transaction.TransactionStatus;
+import org.garry.transaction.monitor.InFlightTransactionRegistry;
+import org.garry.transaction.support.DefaultTransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionOutcome;
+import org.garry.transaction.support.TransactionSynchronizationManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * getTransaction/commit with an {@link InFlightTransactionRegistry} registered as monitor,
+ * against a monitor doing nothing so that both pay for the timing the transaction manager
+ * does for its monitors. The difference between the {@code registry} and {@code noop} scores
+ * is the registry's per-transaction overhead, budgeted at 50ns; the multi-threaded variant
+ * checks that the budget holds while other threads register concurrently. {@code register}
+ * measures the registry's own begin and completion callbacks in isolation
+ */
+public class InFlightTransactionRegistryBenchmark {
+
+    @State(Scope.Thread)
+    public static class Registry
+    {
+        @Param({"noop", "registry"})
+        public String monitor;
+
+        NoOpTransactionManager transactionManager;
+
+        DefaultTransactionDefinition definition;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            this.transactionManager = new NoOpTransactionManager();
+            this.transactionManager.addTransactionMonitor(createMonitor(this.monitor));
+            this.definition = new DefaultTransactionDefinition();
+            this.definition.setName("benchmark");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedRegistry
+    {
+        @Param({"noop", "registry"})
+        public String monitor;
+
+        NoOpTransactionManager transactionManager;
+
+        DefaultTransactionDefinition definition;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            this.transactionManager = new NoOpTransactionManager();
+            this.transactionManager.addTransactionMonitor(createMonitor(this.monitor));
+            this.definition = new DefaultTransactionDefinition();
+            this.definition.setName("benchmark");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Direct
+    {
+        InFlightTransactionRegistry registry;
+
+        DefaultTransactionStatus status;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            this.registry = new InFlightTransactionRegistry();
+            this.status = new DefaultTransactionStatus(null, true, true, false, false, null);
+            DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+            definition.setName("benchmark");
+            this.status.setDefinition(definition);
+            this.status.setStartNanos(System.nanoTime());
+            // Registration copies the keys of the resources bound, typically one
+            TransactionSynchronizationManager.bindResource(this.registry, this.status);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            TransactionSynchronizationManager.unbindResource(this.registry);
+        }
+    }
+
+    static TransactionMonitor createMonitor(String monitor)
+    {
+        return ("registry".equals(monitor) ? new InFlightTransactionRegistry() : new TransactionMonitor() {});
+    }
+
+    @Benchmark
+    public TransactionStatus commit(Registry state)
+    {
+        TransactionStatus status = state.transactionManager.getTransaction(state.definition);
+        state.transactionManager.commit(status);
+        return status;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TransactionStatus commitConcurrently(SharedRegistry state)
+    {
+        TransactionStatus status = state.transactionManager.getTransaction(state.definition);
+        state.transactionManager.commit(status);
+        return status;
+    }
+
+    @Benchmark
+    public InFlightTransactionRegistry register(Direct state)
+    {
+        state.registry.afterBegin(state.status, 0);
+        state.registry.afterCompletion(state.status, TransactionOutcome.COMMITTED, 0);
+        return state.registry;
+    }
+}
@@ -0,0 +1,116 @@
+package org.garry.transaction.benchmark;
+
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.TransactionStatus;
+import org.garry.transaction.support.DefaultTransactionDefinition;
+import org.garry.transaction.support.TransactionSynchronizationManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * getTransaction/commit/rollback through {@link org.garry.transaction.support.AbstractPlatformTransactionManager}
+ * for each propagation behavior, both standalone and within an existing transaction.
+ * Within an existing transaction, REQUIRES_NEW and NOT_SUPPORTED measure suspend/resume
+ * and NESTED measures the savepoint path
+ */
+public class PlatformTransactionManagerBenchmark {
+
+    @State(Scope.Thread)
+    public static class Standalone
+    {
+        // PROPAGATION_MANDATORY needs an existing transaction, see WithinExisting
+        @Param({"PROPAGATION_REQUIRED", "PROPAGATION_SUPPORTS", "PROPAGATION_REQUIRES_NEW",
+                "PROPAGATION_NOT_SUPPORTED", "PROPAGATION_NEVER", "PROPAGATION_NESTED"})
+        public String propagation;
+
+        NoOpTransactionManager transactionManager;
+
+        TransactionDefinition definition;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            this.transactionManager = new NoOpTransactionManager();
+            DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+            definition.setPropagationBehaviorName(this.propagation);
+            this.definition = definition;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WithinExisting
+    {
+        // PROPAGATION_NEVER fails within an existing transaction
+        @Param({"PROPAGATION_REQUIRED", "PROPAGATION_SUPPORTS", "PROPAGATION_MANDATORY",
+                "PROPAGATION_REQUIRES_NEW", "PROPAGATION_NOT_SUPPORTED", "PROPAGATION_NESTED"})
+        public String propagation;
+
+        NoOpTransactionManager transactionManager;
+
+        TransactionDefinition definition;
+
+        TransactionStatus outer;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            this.transactionManager = new NoOpTransactionManager();
+            DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+            definition.setPropagationBehaviorName(this.propagation);
+            this.definition = definition;
+        }
+
+        @Setup(Level.Iteration)
+        public void beginOuter()
+        {
+            this.outer = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+        }
+
+        @TearDown(Level.Iteration)
+        public void commitOuter()
+        {
+            this.transactionManager.commit(this.outer);
+        }
+    }
+
+    @Benchmark
+    public TransactionStatus commit(Standalone state)
+    {
+        TransactionStatus status = state.transactionManager.getTransaction(state.definition);
+        state.transactionManager.commit(status);
+        return status;
+    }
+
+    @Benchmark
+    public TransactionStatus rollback(Standalone state)
+    {
+        TransactionStatus status = state.transactionManager.getTransaction(state.definition);
+        state.transactionManager.rollback(status);
+        return status;
+    }
+
+    @Benchmark
+    public TransactionStatus commitWithinExisting(WithinExisting state)
+    {
+        TransactionStatus status = state.transactionManager.getTransaction(state.definition);
+        state.transactionManager.commit(status);
+        return status;
+    }
+
+    @Benchmark
+    public TransactionStatus rollbackWithinExisting(WithinExisting state)
+    {
+        TransactionStatus status = state.transactionManager.getTransaction(state.definition);
+        state.transactionManager.rollback(status);
+        // A participating rollback marks the outer transaction rollback-only: reset for the next call
+        NoOpTransactionManager.NoOpResourceHolder holder = (NoOpTransactionManager.NoOpResourceHolder)
+                TransactionSynchronizationManager.getResource(state.transactionManager);
+        holder.resetRollbackOnly();
+        return status;
+    }
+}
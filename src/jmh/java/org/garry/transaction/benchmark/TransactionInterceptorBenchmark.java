@@ -0,0 +1,111 @@
+package org.garry.transaction.benchmark;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.interceptor.CompositeTransactionAttributeSource;
+import org.garry.transaction.interceptor.IndexedTransactionAttributeSource;
+import org.garry.transaction.interceptor.MatchAlwaysTransactionAttributeSource;
+import org.garry.transaction.interceptor.MethodMapTransactionAttributeSource;
+import org.garry.transaction.interceptor.NameMatchTransactionAttributeSource;
+import org.garry.transaction.interceptor.RuleBasedTransactionAttribute;
+import org.garry.transaction.interceptor.TransactionAttributeSource;
+import org.garry.transaction.interceptor.TransactionInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link TransactionInterceptor#invoke} for each attribute source, including
+ * attribute lookup, transaction manager resolution and commit
+ */
+@State(Scope.Thread)
+public class TransactionInterceptorBenchmark {
+
+    @Param({"nameMatch", "methodMap", "matchAlways", "composite", "indexed", "indexedInterface"})
+    public String attributeSource;
+
+    private TransactionInterceptor interceptor;
+
+    private MethodInvocation updateInvocation;
+
+    private MethodInvocation findInvocation;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.interceptor = new TransactionInterceptor(new NoOpTransactionManager(), createAttributeSource());
+        this.interceptor.afterPropertiesSet();
+        BenchmarkService target = new DefaultBenchmarkService();
+        this.updateInvocation = new SimpleMethodInvocation(target, BenchmarkService.class.getMethod("update", int.class));
+        this.findInvocation = new SimpleMethodInvocation(target, BenchmarkService.class.getMethod("find", int.class));
+    }
+
+    private TransactionAttributeSource createAttributeSource() throws Exception
+    {
+        switch (this.attributeSource)
+        {
+            case "nameMatch":
+                return nameMatchSource();
+            case "methodMap":
+                // Method map entries match the exact Method invoked, i.e. the interface method
+                MethodMapTransactionAttributeSource methodMap = new MethodMapTransactionAttributeSource();
+                methodMap.addTransactionalMethod(BenchmarkService.class, "update", required());
+                methodMap.addTransactionalMethod(BenchmarkService.class, "find", supportsReadOnly());
+                return methodMap;
+            case "matchAlways":
+                return new MatchAlwaysTransactionAttributeSource();
+            case "composite":
+                return new CompositeTransactionAttributeSource(new TransactionAttributeSource[] {
+                        new NameMatchTransactionAttributeSource(), nameMatchSource()});
+            case "indexed":
+                IndexedTransactionAttributeSource indexed = new IndexedTransactionAttributeSource();
+                indexed.setBeanClassLoader(getClass().getClassLoader());
+                indexed.afterPropertiesSet();
+                return indexed;
+            case "indexedInterface":
+                // Indexed on the interface, so lookups walk past the target class
+                IndexedTransactionAttributeSource indexedInterface = new IndexedTransactionAttributeSource();
+                indexedInterface.setIndexLocation("META-INF/transaction-attributes-interface.properties");
+                indexedInterface.setBeanClassLoader(getClass().getClassLoader());
+                indexedInterface.afterPropertiesSet();
+                return indexedInterface;
+            default:
+                throw new IllegalArgumentException("Unknown attribute source: " + this.attributeSource);
+        }
+    }
+
+    private static NameMatchTransactionAttributeSource nameMatchSource()
+    {
+        NameMatchTransactionAttributeSource nameMatch = new NameMatchTransactionAttributeSource();
+        nameMatch.addTransactionalMethod("update*", required());
+        nameMatch.addTransactionalMethod("find*", supportsReadOnly());
+        return nameMatch;
+    }
+
+    private static RuleBasedTransactionAttribute required()
+    {
+        return new RuleBasedTransactionAttribute();
+    }
+
+    private static RuleBasedTransactionAttribute supportsReadOnly()
+    {
+        RuleBasedTransactionAttribute attribute = new RuleBasedTransactionAttribute();
+        attribute.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+        attribute.setReadOnly(true);
+        return attribute;
+    }
+
+    @Benchmark
+    public Object invokeRequired() throws Throwable
+    {
+        return this.interceptor.invoke(this.updateInvocation);
+    }
+
+    @Benchmark
+    public Object invokeSupportsReadOnly() throws Throwable
+    {
+        return this.interceptor.invoke(this.findInvocation);
+    }
+}
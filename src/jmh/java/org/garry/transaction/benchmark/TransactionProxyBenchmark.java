@@ -0,0 +1,54 @@
+package org.garry.transaction.benchmark;
+
+import org.garry.transaction.interceptor.TransactionProxyFactoryBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Properties;
+
+/**
+ * Calls through a {@link TransactionProxyFactoryBean} proxy, comparing the default
+ * AOP proxy with the direct proxy mode
+ */
+@State(Scope.Thread)
+public class TransactionProxyBenchmark {
+
+    @Param({"false", "true"})
+    public boolean directProxy;
+
+    private BenchmarkService proxy;
+
+    private int counter;
+
+    @Setup
+    public void setUp()
+    {
+        Properties attributes = new Properties();
+        attributes.setProperty("update*", "PROPAGATION_REQUIRED");
+        attributes.setProperty("find*", "PROPAGATION_SUPPORTS,readOnly");
+        TransactionProxyFactoryBean factoryBean = new TransactionProxyFactoryBean();
+        factoryBean.setTransactionManager(new NoOpTransactionManager());
+        factoryBean.setTransactionAttributes(attributes);
+        factoryBean.setTarget(new DefaultBenchmarkService());
+        factoryBean.setProxyInterfaces(new Class<?>[] {BenchmarkService.class});
+        factoryBean.setBeanClassLoader(getClass().getClassLoader());
+        factoryBean.setDirectProxy(this.directProxy);
+        factoryBean.afterPropertiesSet();
+        this.proxy = (BenchmarkService) factoryBean.getObject();
+    }
+
+    @Benchmark
+    public int invokeRequired()
+    {
+        return this.proxy.update(++this.counter);
+    }
+
+    @Benchmark
+    public int invokeSupportsReadOnly()
+    {
+        return this.proxy.find(++this.counter);
+    }
+}
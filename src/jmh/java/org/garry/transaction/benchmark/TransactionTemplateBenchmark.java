@@ -0,0 +1,44 @@
+package org.garry.transaction.benchmark;
+
+import org.garry.transaction.support.TransactionTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link TransactionTemplate#execute} with a committing and a rolling back callback
+ */
+@State(Scope.Thread)
+public class TransactionTemplateBenchmark {
+
+    @Param({"PROPAGATION_REQUIRED", "PROPAGATION_SUPPORTS", "PROPAGATION_REQUIRES_NEW"})
+    public String propagation;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int counter;
+
+    @Setup
+    public void setUp()
+    {
+        this.transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        this.transactionTemplate.setPropagationBehaviorName(this.propagation);
+    }
+
+    @Benchmark
+    public Integer execute()
+    {
+        return this.transactionTemplate.execute(status -> ++this.counter);
+    }
+
+    @Benchmark
+    public Integer executeWithRollbackOnly()
+    {
+        return this.transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return ++this.counter;
+        });
+    }
+}
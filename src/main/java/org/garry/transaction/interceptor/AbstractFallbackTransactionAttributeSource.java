@@ -34,6 +34,19 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
      */
     private final Map<Object,TransactionAttribute> attributeCache = new ConcurrentHashMap<>(1024);
 
+    @Nullable
+    private TransactionAttributePool transactionAttributePool;
+
+    /**
+     * Set the pool to resolve computed attributes against, so that methods with identical
+     * definitions share one attribute instance. Pooled attributes carry no per-method
+     * descriptor. Default is none
+     * @param transactionAttributePool
+     */
+    public void setTransactionAttributePool(@Nullable TransactionAttributePool transactionAttributePool) {
+        this.transactionAttributePool = transactionAttributePool;
+    }
+
     /**
      * Determine the transaction attribute for this method invocation.
      * @param method
@@ -76,6 +89,10 @@ public abstract class AbstractFallbackTransactionAttributeSource implements Tran
             }
             else
             {
+                if(this.transactionAttributePool != null)
+                {
+                    txAttr = this.transactionAttributePool.intern(txAttr);
+                }
                 String methodIdentification = ClassUtils.getQualifiedMethodName(method, targetClass);
                 if(txAttr instanceof DefaultTransactionAttribute)
                 {
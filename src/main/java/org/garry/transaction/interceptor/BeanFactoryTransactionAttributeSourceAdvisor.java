@@ -45,6 +45,6 @@ public class BeanFactoryTransactionAttributeSourceAdvisor extends AbstractBeanFa
 
     @Override
     public Pointcut getPointcut() {
-        return null;
+        return this.pointcut;
     }
 }
@@ -1,22 +1,41 @@
 package org.garry.transaction.interceptor;
 
+import org.springframework.core.MethodClassKey;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @ClassName Composite {@link TransactionAttributeSource} implementation that iterates
  * over a given array of {@link TransactionAttributeSource} instances
  * @Description TODO 组合模式？？？
+ * The winning attribute (or the absence of one) is cached per method and target class,
+ * so the delegates are only walked once; call {@link #clearCache()} after changing a delegate
  * @Author cy
  * @Date 2021/4/25 20:13
  */
 public class CompositeTransactionAttributeSource implements TransactionAttributeSource, Serializable {
 
+    /**
+     * Canonical value held in cache to indicate no transaction attribute was
+     * found for this method, and we don't need to look again
+     */
+    private static final TransactionAttribute NULL_TRANSACTION_ATTRIBUTE = new DefaultTransactionAttribute();
+
     private final TransactionAttributeSource[] transactionAttributeSources;
 
+    /**
+     * Cache of TransactionAttributes, keyed by method on a specific target class.
+     * Method keys are not serializable, so the cache is rebuilt after deserialization
+     */
+    private transient Map<Object,TransactionAttribute> attributeCache = new ConcurrentHashMap<>(1024);
+
     public CompositeTransactionAttributeSource(TransactionAttributeSource[] transactionAttributeSources) {
         Assert.notNull(transactionAttributeSources,"TransactionAttributeSource array must not be null");
         this.transactionAttributeSources = transactionAttributeSources;
@@ -32,9 +51,47 @@ public class CompositeTransactionAttributeSource implements TransactionAttribute
         return this.transactionAttributeSources;
     }
 
+    @Override
+    public boolean isCandidateClass(Class<?> targetClass) {
+        for(TransactionAttributeSource tas: this.transactionAttributeSources)
+        {
+            if(tas.isCandidateClass(targetClass))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Nullable
     @Override
     public TransactionAttribute getTransactionAttribute(Method method, Class<?> targetClass) {
+        // First, see if we have a cached value
+        Object cacheKey = getCacheKey(method, targetClass);
+        TransactionAttribute cached = this.attributeCache.get(cacheKey);
+        if(cached != null)
+        {
+            // Value will either be canonical value indicating there is no transaction attribute,
+            // or the attribute of the winning delegate
+            return (cached == NULL_TRANSACTION_ATTRIBUTE ? null : cached);
+        }
+
+        // We need to work it out
+        TransactionAttribute ta = computeTransactionAttribute(method, targetClass);
+        this.attributeCache.put(cacheKey, (ta != null ? ta : NULL_TRANSACTION_ATTRIBUTE));
+        return ta;
+    }
+
+    /**
+     * Ask each delegate in order, returning the first attribute found.
+     * Same signature as {@link #getTransactionAttribute}, but doesn't cache the result
+     * @param method
+     * @param targetClass
+     * @return
+     */
+    @Nullable
+    protected TransactionAttribute computeTransactionAttribute(Method method, @Nullable Class<?> targetClass)
+    {
         for(TransactionAttributeSource tas: this.transactionAttributeSources)
         {
             TransactionAttribute ta = tas.getTransactionAttribute(method, targetClass);
@@ -46,5 +103,35 @@ public class CompositeTransactionAttributeSource implements TransactionAttribute
         return null;
     }
 
+    /**
+     * Determine a cache key for the given method and target class
+     * @param method
+     * @param targetClass
+     * @return
+     */
+    protected Object getCacheKey(Method method, @Nullable Class<?> targetClass)
+    {
+        return new MethodClassKey(method, targetClass);
+    }
+
+    /**
+     * Drop all cached lookups, positive and negative.
+     * To be called whenever one of the delegate sources has been reconfigured
+     */
+    public void clearCache()
+    {
+        this.attributeCache.clear();
+    }
+
+    //---------------------------------------------------------------------
+    // Serialization support
+    //---------------------------------------------------------------------
 
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        // Rely on default serialization; just initialize state after deserialization
+        ois.defaultReadObject();
+
+        // Initialize transient fields
+        this.attributeCache = new ConcurrentHashMap<>(1024);
+    }
 }
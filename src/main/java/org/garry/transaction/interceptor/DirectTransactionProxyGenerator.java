@@ -0,0 +1,305 @@
+package org.garry.transaction.interceptor;
+
+import org.garry.transaction.support.CallbackPreferringPlatformTransactionManager;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @ClassName DirectTransactionProxyGenerator
+ * @Description Generates a proxy class implementing the given interfaces that calls
+ * straight into a transactional target, using the ASM library repackaged in spring-core.
+ * <p>The transaction plan of every proxied method is resolved once, at generation time, and
+ * stored in a static field of the generated class. A transactional method compiles to
+ * <pre>
+ * TransactionInfo txInfo = PLAN_n.begin();
+ * try {
+ *     result = ((Interface) this.target).method(args);
+ * }
+ * catch (Throwable ex) {
+ *     PLAN_n.completeAfterThrowing(txInfo, ex);
+ *     throw ex;
+ * }
+ * PLAN_n.complete(txInfo);
+ * return result;
+ * </pre>
+ * so a call involves no reflection, no interceptor chain, no attribute lookup and no
+ * callback object. Methods without a transaction attribute call the target directly, as they
+ * would not match the transaction pointcut. {@code toString()} is delegated to the target,
+ * {@code equals} and {@code hashCode} are based on the proxy's identity
+ * @Author cy
+ * @Date 2021/5/9 20:47
+ */
+abstract class DirectTransactionProxyGenerator implements Opcodes {
+
+    private static final String PROXY_CLASS_NAME_PREFIX =
+            DirectTransactionProxyGenerator.class.getPackage().getName() + ".DirectTransactionProxy$$";
+
+    private static final String PLAN_FIELD_PREFIX = "PLAN_";
+
+    private static final String TARGET_FIELD = "target";
+
+    private static final String OBJECT_DESCRIPTOR = Type.getDescriptor(Object.class);
+
+    private static final String PLAN_TYPE = Type.getInternalName(TransactionAspectSupport.TransactionPlan.class);
+
+    private static final String PLAN_DESCRIPTOR = Type.getDescriptor(TransactionAspectSupport.TransactionPlan.class);
+
+    private static final String INFO_DESCRIPTOR = Type.getDescriptor(TransactionAspectSupport.TransactionInfo.class);
+
+    private static final AtomicInteger proxyClassCounter = new AtomicInteger();
+
+    /**
+     * Create a direct transactional proxy for the given target
+     * @param target the target object, implementing all given interfaces
+     * @param targetClass the target class, used to resolve the transaction attributes
+     * @param interfaces the public interfaces to proxy
+     * @param transactionAspect the aspect resolving and demarcating the transactions
+     * @param classLoader the class loader to define the proxy class in, or {@code null} for the default
+     * @return the proxy, also implementing {@link TransactionalProxy}
+     */
+    static Object createProxy(Object target, Class<?> targetClass, Class<?>[] interfaces,
+                              TransactionAspectSupport transactionAspect, @Nullable ClassLoader classLoader)
+    {
+        String className = PROXY_CLASS_NAME_PREFIX + proxyClassCounter.incrementAndGet();
+        String internalName = className.replace('.', '/');
+        String[] interfaceNames = new String[interfaces.length + 1];
+        for(int i = 0; i < interfaces.length; i++)
+        {
+            Class<?> ifc = interfaces[i];
+            if(!ifc.isInterface() || !Modifier.isPublic(ifc.getModifiers()))
+            {
+                throw new IllegalArgumentException("Direct proxies require public interfaces: " + ifc.getName());
+            }
+            interfaceNames[i] = Type.getInternalName(ifc);
+        }
+        interfaceNames[interfaces.length] = Type.getInternalName(TransactionalProxy.class);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null,
+                Type.getInternalName(Object.class), interfaceNames);
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, TARGET_FIELD, OBJECT_DESCRIPTOR, null, null).visitEnd();
+        generateConstructor(cw, internalName);
+        generateToString(cw, internalName);
+
+        List<TransactionAspectSupport.TransactionPlan> plans = new ArrayList<>();
+        Set<String> generatedMethods = new HashSet<>();
+        for(Class<?> ifc : interfaces)
+        {
+            for(Method method : ifc.getMethods())
+            {
+                if(Modifier.isStatic(method.getModifiers()) || isObjectMethod(method) ||
+                        !generatedMethods.add(method.getName() + Type.getMethodDescriptor(method)))
+                {
+                    continue;
+                }
+                TransactionAspectSupport.TransactionPlan plan =
+                        transactionAspect.createTransactionPlan(method, targetClass);
+                if(plan.isTransactional())
+                {
+                    Assert.state(!(plan.getTransactionManager() instanceof CallbackPreferringPlatformTransactionManager),
+                            "Direct proxies do not support a CallbackPreferringPlatformTransactionManager");
+                    String planField = PLAN_FIELD_PREFIX + plans.size();
+                    cw.visitField(ACC_PUBLIC | ACC_STATIC, planField, PLAN_DESCRIPTOR, null, null).visitEnd();
+                    generateTransactionalMethod(cw, internalName, method, planField);
+                    plans.add(plan);
+                }
+                else
+                {
+                    generateDelegatingMethod(cw, internalName, method);
+                }
+            }
+        }
+        cw.visitEnd();
+
+        ClassLoader parent = (classLoader != null ? classLoader : DirectTransactionProxyGenerator.class.getClassLoader());
+        try {
+            Class<?> proxyClass = new ProxyClassLoader(parent).defineProxyClass(className, cw.toByteArray());
+            for(int i = 0; i < plans.size(); i++)
+            {
+                proxyClass.getField(PLAN_FIELD_PREFIX + i).set(null, plans.get(i));
+            }
+            return proxyClass.getConstructor(Object.class).newInstance(target);
+        }
+        catch (ReflectiveOperationException | LinkageError ex) {
+            throw new IllegalStateException("Could not generate direct transactional proxy for target of class [" +
+                    targetClass.getName() + "]", ex);
+        }
+    }
+
+    private static boolean isObjectMethod(Method method)
+    {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        }
+        catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    private static void generateConstructor(ClassWriter cw, String internalName)
+    {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + OBJECT_DESCRIPTOR + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(Object.class), "<init>", "()V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitFieldInsn(PUTFIELD, internalName, TARGET_FIELD, OBJECT_DESCRIPTOR);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateToString(ClassWriter cw, String internalName)
+    {
+        String descriptor = "()" + Type.getDescriptor(String.class);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "toString", descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, TARGET_FIELD, OBJECT_DESCRIPTOR);
+        mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Object.class), "toString", descriptor, false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateDelegatingMethod(ClassWriter cw, String internalName, Method method)
+    {
+        MethodVisitor mv = visitProxyMethod(cw, method);
+        mv.visitCode();
+        invokeTarget(mv, internalName, method);
+        mv.visitInsn(Type.getReturnType(method).getOpcode(IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateTransactionalMethod(ClassWriter cw, String internalName, Method method,
+                                                    String planField)
+    {
+        Type returnType = Type.getReturnType(method);
+        int txInfoSlot = firstFreeSlot(method);
+        int resultSlot = txInfoSlot + 1;
+
+        MethodVisitor mv = visitProxyMethod(cw, method);
+        mv.visitCode();
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(Throwable.class));
+
+        // TransactionInfo txInfo = PLAN_n.begin();
+        mv.visitFieldInsn(GETSTATIC, internalName, planField, PLAN_DESCRIPTOR);
+        mv.visitMethodInsn(INVOKEVIRTUAL, PLAN_TYPE, "begin", "()" + INFO_DESCRIPTOR, false);
+        mv.visitVarInsn(ASTORE, txInfoSlot);
+
+        // result = ((Interface) this.target).method(args);
+        mv.visitLabel(tryStart);
+        invokeTarget(mv, internalName, method);
+        mv.visitLabel(tryEnd);
+        if(returnType.getSort() != Type.VOID)
+        {
+            mv.visitVarInsn(returnType.getOpcode(ISTORE), resultSlot);
+        }
+
+        // PLAN_n.complete(txInfo); return result;
+        mv.visitFieldInsn(GETSTATIC, internalName, planField, PLAN_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, txInfoSlot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, PLAN_TYPE, "complete", "(" + INFO_DESCRIPTOR + ")V", false);
+        if(returnType.getSort() != Type.VOID)
+        {
+            mv.visitVarInsn(returnType.getOpcode(ILOAD), resultSlot);
+        }
+        mv.visitInsn(returnType.getOpcode(IRETURN));
+
+        // catch (Throwable ex) { PLAN_n.completeAfterThrowing(txInfo, ex); throw ex; }
+        mv.visitLabel(handler);
+        mv.visitVarInsn(ASTORE, resultSlot);
+        mv.visitFieldInsn(GETSTATIC, internalName, planField, PLAN_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, txInfoSlot);
+        mv.visitVarInsn(ALOAD, resultSlot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, PLAN_TYPE, "completeAfterThrowing",
+                "(" + INFO_DESCRIPTOR + Type.getDescriptor(Throwable.class) + ")V", false);
+        mv.visitVarInsn(ALOAD, resultSlot);
+        mv.visitInsn(ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static MethodVisitor visitProxyMethod(ClassWriter cw, Method method)
+    {
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] exceptions = null;
+        if(exceptionTypes.length > 0)
+        {
+            exceptions = new String[exceptionTypes.length];
+            for(int i = 0; i < exceptionTypes.length; i++)
+            {
+                exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+            }
+        }
+        return cw.visitMethod(ACC_PUBLIC | ACC_FINAL, method.getName(), Type.getMethodDescriptor(method),
+                null, exceptions);
+    }
+
+    /**
+     * Load the target and all arguments, and invoke the given interface method on the target
+     * @param mv
+     * @param internalName
+     * @param method
+     */
+    private static void invokeTarget(MethodVisitor mv, String internalName, Method method)
+    {
+        String ifcName = Type.getInternalName(method.getDeclaringClass());
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, TARGET_FIELD, OBJECT_DESCRIPTOR);
+        mv.visitTypeInsn(CHECKCAST, ifcName);
+        int slot = 1;
+        for(Type argumentType : Type.getArgumentTypes(method))
+        {
+            mv.visitVarInsn(argumentType.getOpcode(ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        mv.visitMethodInsn(INVOKEINTERFACE, ifcName, method.getName(), Type.getMethodDescriptor(method), true);
+    }
+
+    private static int firstFreeSlot(Method method)
+    {
+        int slot = 1;
+        for(Type argumentType : Type.getArgumentTypes(method))
+        {
+            slot += argumentType.getSize();
+        }
+        return slot;
+    }
+
+    /**
+     * Class loader defining a generated proxy class, delegating to the class loader
+     * that sees the proxied interfaces and this framework
+     */
+    private static final class ProxyClassLoader extends ClassLoader
+    {
+        ProxyClassLoader(ClassLoader parent)
+        {
+            super(parent);
+        }
+
+        Class<?> defineProxyClass(String name, byte[] bytecode)
+        {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package org.garry.transaction.interceptor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.MethodClassKey;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.PatternMatchUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @ClassName IndexedTransactionAttributeSource
+ * @Description {@link TransactionAttributeSource} implementation backed by a precomputed
+ * index of transactional methods, loaded from the class path at startup.
+ * <p>The index is a properties file, by default {@code META-INF/transaction-attributes.properties},
+ * that uses the same format as {@link MethodMapTransactionAttributeSource}: keys are
+ * {@code FQN.methodName}, values are attribute definitions in the String form understood
+ * by {@link TransactionAttributeEditor}. Method names may be simple "xxx*", "*xxx" and
+ * "*xxx*" patterns; an exact name wins over patterns, and longer patterns over shorter ones.
+ * All such files on the class path are merged.
+ * <p>Lookups are plain map lookups by class name and method name, walking up the
+ * superclass chain of the target class and then its interfaces; no methods are
+ * introspected reflectively. The outcome is cached per method and target class, so that
+ * the walk happens once. Overloaded methods share the attribute registered for their name
+ * @Author cy
+ * @Date 2021/5/9 16:12
+ */
+public class IndexedTransactionAttributeSource
+        implements TransactionAttributeSource, BeanClassLoaderAware, InitializingBean {
+
+    /**
+     * The default location of the index within each class path root
+     */
+    public static final String DEFAULT_INDEX_LOCATION = "META-INF/transaction-attributes.properties";
+
+    /**
+     * Canonical value held in cache to indicate no transaction attribute was
+     * found for this method, and we don't need to look again
+     */
+    private static final TransactionAttribute NULL_TRANSACTION_ATTRIBUTE = new DefaultTransactionAttribute();
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private String indexLocation = DEFAULT_INDEX_LOCATION;
+
+    @Nullable
+    private ClassLoader beanClassLoader = ClassUtils.getDefaultClassLoader();
+
+    private TransactionAttributePool transactionAttributePool = TransactionAttributePool.getSharedInstance();
+
+    /**
+     * Map from class name to the indexed methods of that class
+     */
+    @Nullable
+    private volatile Map<String, IndexedMethods> index;
+
+    /**
+     * Cache of TransactionAttributes, keyed by method on a specific target class
+     */
+    private final Map<Object, TransactionAttribute> attributeCache = new ConcurrentHashMap<>(1024);
+
+    /**
+     * Set the class path location of the index files to load.
+     * Default is {@link #DEFAULT_INDEX_LOCATION}
+     * @param indexLocation
+     */
+    public void setIndexLocation(String indexLocation) {
+        Assert.hasText(indexLocation, "Index location must not be empty");
+        this.indexLocation = indexLocation;
+    }
+
+    /**
+     * Set the pool used to parse the indexed definitions, so that identical
+     * definitions share one attribute instance. Default is the shared pool
+     * @param transactionAttributePool
+     */
+    public void setTransactionAttributePool(TransactionAttributePool transactionAttributePool) {
+        Assert.notNull(transactionAttributePool, "TransactionAttributePool must not be null");
+        this.transactionAttributePool = transactionAttributePool;
+    }
+
+    @Override
+    public void setBeanClassLoader(@Nullable ClassLoader beanClassLoader) {
+        this.beanClassLoader = beanClassLoader;
+    }
+
+    /**
+     * Eagerly loads the index
+     * @throws Exception
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        getIndex();
+    }
+
+    /**
+     * A class is a candidate if it, one of its superclasses or one of their
+     * interfaces has indexed methods: the same types {@link #getTransactionAttribute} looks at
+     */
+    @Override
+    public boolean isCandidateClass(Class<?> targetClass) {
+        Map<String, IndexedMethods> index = getIndex();
+        for(Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass())
+        {
+            if(index.containsKey(clazz.getName()))
+            {
+                return true;
+            }
+        }
+        for(Class<?> ifc : ClassUtils.getAllInterfacesForClassAsSet(targetClass))
+        {
+            if(index.containsKey(ifc.getName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @Nullable
+    public TransactionAttribute getTransactionAttribute(Method method, @Nullable Class<?> targetClass) {
+        // First, see if we have a cached value
+        Object cacheKey = new MethodClassKey(method, targetClass);
+        TransactionAttribute cached = this.attributeCache.get(cacheKey);
+        if(cached != null)
+        {
+            return (cached == NULL_TRANSACTION_ATTRIBUTE ? null : cached);
+        }
+
+        // We need to work it out
+        TransactionAttribute attr = computeTransactionAttribute(method, targetClass);
+        this.attributeCache.put(cacheKey, (attr != null ? attr : NULL_TRANSACTION_ATTRIBUTE));
+        return attr;
+    }
+
+    /**
+     * Look the method up in the index for the target class, its superclasses and their
+     * interfaces, then for the class declaring the method. Same signature as
+     * {@link #getTransactionAttribute}, but doesn't cache the result
+     * @param method
+     * @param targetClass
+     * @return
+     */
+    @Nullable
+    private TransactionAttribute computeTransactionAttribute(Method method, @Nullable Class<?> targetClass)
+    {
+        Map<String, IndexedMethods> index = getIndex();
+        String methodName = method.getName();
+        if(targetClass != null)
+        {
+            for(Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass())
+            {
+                TransactionAttribute attr = findTransactionAttribute(index, clazz, methodName);
+                if(attr != null)
+                {
+                    return attr;
+                }
+            }
+            Set<Class<?>> interfaces = ClassUtils.getAllInterfacesForClassAsSet(targetClass);
+            for(Class<?> ifc : interfaces)
+            {
+                TransactionAttribute attr = findTransactionAttribute(index, ifc, methodName);
+                if(attr != null)
+                {
+                    return attr;
+                }
+            }
+        }
+        // Fallback is the class or interface declaring the invoked method
+        return findTransactionAttribute(index, method.getDeclaringClass(), methodName);
+    }
+
+    @Nullable
+    private TransactionAttribute findTransactionAttribute(Map<String, IndexedMethods> index, Class<?> clazz,
+                                                          String methodName)
+    {
+        IndexedMethods methods = index.get(clazz.getName());
+        return (methods != null ? methods.getTransactionAttribute(methodName) : null);
+    }
+
+    private Map<String, IndexedMethods> getIndex()
+    {
+        Map<String, IndexedMethods> index = this.index;
+        if(index == null)
+        {
+            synchronized (this)
+            {
+                index = this.index;
+                if(index == null)
+                {
+                    Map<String, Map<String, TransactionAttribute>> entries = loadIndex();
+                    index = new HashMap<>(entries.size() * 2);
+                    for(Map.Entry<String, Map<String, TransactionAttribute>> entry : entries.entrySet())
+                    {
+                        index.put(entry.getKey(), new IndexedMethods(entry.getValue()));
+                    }
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Load and merge all index files found at the configured location
+     * @return
+     */
+    protected Map<String, Map<String, TransactionAttribute>> loadIndex()
+    {
+        Map<String, Map<String, TransactionAttribute>> index = new HashMap<>();
+        try
+        {
+            ClassLoader classLoader = (this.beanClassLoader != null ?
+                    this.beanClassLoader : IndexedTransactionAttributeSource.class.getClassLoader());
+            Enumeration<URL> urls = classLoader.getResources(this.indexLocation);
+            while (urls.hasMoreElements())
+            {
+                URL url = urls.nextElement();
+                Properties properties = new Properties();
+                try (InputStream is = url.openStream())
+                {
+                    properties.load(is);
+                }
+                if(logger.isDebugEnabled())
+                {
+                    logger.debug("Loading " + properties.size() + " transactional method entries from [" + url + "]");
+                }
+                for(String name : properties.stringPropertyNames())
+                {
+                    addIndexEntry(index, name, properties.getProperty(name));
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("Unable to load transaction index from location [" +
+                    this.indexLocation + "]", ex);
+        }
+        return (index.isEmpty() ? Collections.emptyMap() : index);
+    }
+
+    private void addIndexEntry(Map<String, Map<String, TransactionAttribute>> index, String name, String value)
+    {
+        int lastDotIndex = name.lastIndexOf('.');
+        if(lastDotIndex == -1)
+        {
+            throw new IllegalArgumentException("'" + name + "' is not a valid method name: format is FQN.methodName");
+        }
+        String className = name.substring(0, lastDotIndex);
+        String methodName = name.substring(lastDotIndex + 1);
+        TransactionAttribute attr = this.transactionAttributePool.parse(value);
+        if(attr == null)
+        {
+            return;
+        }
+        TransactionAttribute previous = index.computeIfAbsent(className, key -> new HashMap<>()).put(methodName, attr);
+        if(previous != null && logger.isDebugEnabled())
+        {
+            logger.debug("Replacing indexed attribute for transactional method [" + name + "]: [" +
+                    previous + "] -> [" + attr + "]");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + ": " + this.indexLocation;
+    }
+
+    /**
+     * Indexed methods of one class: exact names, plus name patterns whose
+     * matches are resolved once per method name
+     */
+    private static final class IndexedMethods
+    {
+        /**
+         * Canonical value cached for method names no pattern matches
+         */
+        private static final TransactionAttribute NO_MATCH = new DefaultTransactionAttribute();
+
+        private final Map<String, TransactionAttribute> exactMethods = new HashMap<>();
+
+        private final Map<String, TransactionAttribute> patternMethods = new HashMap<>();
+
+        /**
+         * Pattern match per method name, computed lazily
+         */
+        private final Map<String, TransactionAttribute> patternMatches = new ConcurrentHashMap<>();
+
+        IndexedMethods(Map<String, TransactionAttribute> methods)
+        {
+            for(Map.Entry<String, TransactionAttribute> entry : methods.entrySet())
+            {
+                if(entry.getKey().indexOf('*') != -1)
+                {
+                    this.patternMethods.put(entry.getKey(), entry.getValue());
+                }
+                else
+                {
+                    this.exactMethods.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        @Nullable
+        TransactionAttribute getTransactionAttribute(String methodName)
+        {
+            TransactionAttribute attr = this.exactMethods.get(methodName);
+            if(attr != null || this.patternMethods.isEmpty())
+            {
+                return attr;
+            }
+            attr = this.patternMatches.computeIfAbsent(methodName, this::findBestMatch);
+            return (attr != NO_MATCH ? attr : null);
+        }
+
+        /**
+         * Look for the most specific pattern matching the given method name
+         * @param methodName
+         * @return
+         */
+        private TransactionAttribute findBestMatch(String methodName)
+        {
+            TransactionAttribute attr = NO_MATCH;
+            String bestNameMatch = null;
+            for(Map.Entry<String, TransactionAttribute> entry : this.patternMethods.entrySet())
+            {
+                String mappedName = entry.getKey();
+                if(PatternMatchUtils.simpleMatch(mappedName, methodName) &&
+                        (bestNameMatch == null || bestNameMatch.length() <= mappedName.length()))
+                {
+                    attr = entry.getValue();
+                    bestNameMatch = mappedName;
+                }
+            }
+            return attr;
+        }
+    }
+}
@@ -13,8 +13,10 @@ import org.springframework.util.PatternMatchUtils;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @ClassName MethodMapTransactionAttributeSource
@@ -37,6 +39,9 @@ public class MethodMapTransactionAttributeSource
     @Nullable
     private ClassLoader beanClassLoader = ClassUtils.getDefaultClassLoader();
 
+    @Nullable
+    private TransactionAttributePool transactionAttributePool;
+
     private boolean eagerlyInitialized = false;
 
     private boolean initialized = false;
@@ -51,6 +56,11 @@ public class MethodMapTransactionAttributeSource
      */
     private final Map<Method,String> methodNameMap = new HashMap<>();
 
+    /**
+     * Classes declaring at least one registered method
+     */
+    private final Set<Class<?>> declaringClasses = new LinkedHashSet<>();
+
     /**
      * Intended for configuration via setter injection, typically within
      * a Spring bean factory. Relies on {@link #afterPropertiesSet()}
@@ -60,6 +70,15 @@ public class MethodMapTransactionAttributeSource
         this.methodMap = methodMap;
     }
 
+    /**
+     * Set the pool to resolve registered attributes against, so that methods with identical
+     * definitions share one attribute instance. Default is none
+     * @param transactionAttributePool
+     */
+    public void setTransactionAttributePool(@Nullable TransactionAttributePool transactionAttributePool) {
+        this.transactionAttributePool = transactionAttributePool;
+    }
+
     @Override
     public void setBeanClassLoader(@Nullable ClassLoader beanClassLoader) {
         this.beanClassLoader = beanClassLoader;
@@ -157,7 +176,11 @@ public class MethodMapTransactionAttributeSource
         if (logger.isDebugEnabled()) {
             logger.debug("Adding transactional method [" + method + "] with attribute [" + attr + "]");
         }
+        if (this.transactionAttributePool != null) {
+            attr = this.transactionAttributePool.intern(attr);
+        }
         this.transactionAttributeMap.put(method, attr);
+        this.declaringClasses.add(method.getDeclaringClass());
     }
 
     /**
@@ -171,6 +194,42 @@ public class MethodMapTransactionAttributeSource
         return PatternMatchUtils.simpleMatch(mappedName, methodName);
     }
 
+    /**
+     * A class can only have registered methods if it is, or derives from,
+     * one of the classes the registered methods are declared on
+     */
+    @Override
+    public boolean isCandidateClass(Class<?> targetClass) {
+        if(this.eagerlyInitialized)
+        {
+            return hasDeclaringClassFor(targetClass);
+        }
+        else
+        {
+            synchronized (this.transactionAttributeMap)
+            {
+                if(!this.initialized)
+                {
+                    initMethodMap(this.methodMap);
+                    this.initialized = true;
+                }
+                return hasDeclaringClassFor(targetClass);
+            }
+        }
+    }
+
+    private boolean hasDeclaringClassFor(Class<?> targetClass)
+    {
+        for(Class<?> declaringClass : this.declaringClasses)
+        {
+            if(declaringClass.isAssignableFrom(targetClass))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     @Nullable
     public TransactionAttribute getTransactionAttribute(Method method, Class<?> targetClass) {
@@ -29,10 +29,22 @@ public class NameMatchTransactionAttributeSource implements TransactionAttribute
      */
     private Map<String,TransactionAttribute> nameMap = new HashMap<>();
 
+    @Nullable
+    private transient TransactionAttributePool transactionAttributePool;
+
     public void setNameMap(Map<String, TransactionAttribute> nameMap) {
        nameMap.forEach(this::addTransactionalMethod);
     }
 
+    /**
+     * Set the pool to resolve added and parsed attributes against, so that methods with identical
+     * definitions share one attribute instance. Default is none
+     * @param transactionAttributePool
+     */
+    public void setTransactionAttributePool(@Nullable TransactionAttributePool transactionAttributePool) {
+        this.transactionAttributePool = transactionAttributePool;
+    }
+
     /**
      * Parses the given properties into a name/attribute map.
      * Expects method names as keys andString attributes definitions as values,
@@ -47,8 +59,16 @@ public class NameMatchTransactionAttributeSource implements TransactionAttribute
         {
             String methodName = (String)propNames.nextElement();
             String value = transactionAttributes.getProperty(methodName);
-            tae.setAsText(value);
-            TransactionAttribute attr = (TransactionAttribute) tae.getValue();
+            TransactionAttribute attr;
+            if(this.transactionAttributePool != null)
+            {
+                attr = this.transactionAttributePool.parse(value);
+            }
+            else
+            {
+                tae.setAsText(value);
+                attr = (TransactionAttribute) tae.getValue();
+            }
             addTransactionalMethod(methodName,attr);
         }
     }
@@ -66,9 +86,22 @@ public class NameMatchTransactionAttributeSource implements TransactionAttribute
         {
             logger.debug("Adding transactional method [" + methodName + "] with attribute [" + attr + "]");
         }
+        if(this.transactionAttributePool != null && attr != null)
+        {
+            attr = this.transactionAttributePool.intern(attr);
+        }
         this.nameMap.put(methodName,attr);
     }
 
+    /**
+     * Name patterns may match methods of any class, so every class is a
+     * candidate unless no transactional method names have been registered at all
+     */
+    @Override
+    public boolean isCandidateClass(Class<?> targetClass) {
+        return !this.nameMap.isEmpty();
+    }
+
     @Override
     @Nullable
     public TransactionAttribute getTransactionAttribute(Method method,@Nullable Class<?> targetClass) {
@@ -1,6 +1,8 @@
 package org.garry.transaction.interceptor;
 
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 /**
  * @ClassName RollbackRuleAttribute
@@ -17,6 +19,13 @@ public class RollbackRuleAttribute {
 
     private final String exceptionName;
 
+    /**
+     * The exception type if this rule was created from a class,
+     * in which case the hierarchy is matched exactly rather than by name pattern
+     */
+    @Nullable
+    private final Class<?> exceptionType;
+
     public RollbackRuleAttribute(Class<?> clazz)
     {
         Assert.notNull(clazz,"'clazz' cannot be null");
@@ -27,12 +36,14 @@ public class RollbackRuleAttribute {
             );
         }
         this.exceptionName = clazz.getName();
+        this.exceptionType = clazz;
     }
 
     public RollbackRuleAttribute(String exceptionName)
     {
         Assert.hasText(exceptionName, "'exceptionName' cannot be null or empty");
         this.exceptionName = exceptionName;
+        this.exceptionType = null;
     }
 
     /**
@@ -56,9 +67,22 @@ public class RollbackRuleAttribute {
         return getDepth(ex.getClass(),0);
     }
 
+    /**
+     * Return the depth of the superclass matching for the given exception type.
+     * Same semantics as {@link #getDepth(Throwable)}, but only depends on the class,
+     * so the result may be cached per exception type
+     * @param exceptionClass
+     * @return
+     */
+    public int getDepth(Class<? extends Throwable> exceptionClass)
+    {
+        return getDepth((Class<?>) exceptionClass,0);
+    }
+
     private int getDepth(Class<?> exceptionClass, int depth)
     {
-        if(exceptionClass.getName().contains(this.exceptionName))
+        if(this.exceptionType != null ? exceptionClass == this.exceptionType :
+                exceptionClass.getName().contains(this.exceptionName))
         {
             // Found it
             return depth;
@@ -84,13 +108,14 @@ public class RollbackRuleAttribute {
             return false;
         }
         RollbackRuleAttribute rhs = (RollbackRuleAttribute) other;
-        return this.exceptionName.equals(rhs.exceptionName);
+        return (this.exceptionName.equals(rhs.exceptionName) &&
+                ObjectUtils.nullSafeEquals(this.exceptionType, rhs.exceptionType));
     }
 
     @Override
     public int hashCode()
     {
-        return this.exceptionName.hashCode();
+        return this.exceptionName.hashCode() * 29 + ObjectUtils.nullSafeHashCode(this.exceptionType);
     }
 
     @Override
@@ -8,6 +8,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @ClassName RuleBasedTransactionAttribute
@@ -32,9 +34,22 @@ public class RuleBasedTransactionAttribute extends DefaultTransactionAttribute i
 
     private static final Log logger = LogFactory.getLog(RuleBasedTransactionAttribute.class);
 
+    /**
+     * Canonical value held in the decision cache to indicate that no rule matched
+     * the exception type, and the default rules apply
+     */
+    private static final RollbackRuleAttribute NO_MATCHING_RULE = new RollbackRuleAttribute(Throwable.class);
+
     @Nullable
     private List<RollbackRuleAttribute> rollbackRules;
 
+    /**
+     * Winning rule per exception type, computed lazily and dropped whenever
+     * the rules are handed out or replaced
+     */
+    @Nullable
+    private transient volatile ConcurrentMap<Class<?>, RollbackRuleAttribute> winningRules;
+
     public RuleBasedTransactionAttribute()
     {
         super();
@@ -54,32 +69,73 @@ public class RuleBasedTransactionAttribute extends DefaultTransactionAttribute i
 
     public void setRollbackRules(@Nullable List<RollbackRuleAttribute> rollbackRules) {
         this.rollbackRules = rollbackRules;
+        this.winningRules = null;
     }
 
+    /**
+     * Return the list of rollback rules. The list is live and may be modified,
+     * so any cached rollback decisions are discarded
+     * @return
+     */
     @Nullable
     public List<RollbackRuleAttribute> getRollbackRules() {
         if(this.rollbackRules == null)
         {
             this.rollbackRules = new LinkedList<>();
         }
+        this.winningRules = null;
         return this.rollbackRules;
     }
 
     @Override
     public boolean rollbackOn(Throwable ex) {
+        ConcurrentMap<Class<?>, RollbackRuleAttribute> winningRules = this.winningRules;
+        if(winningRules == null)
+        {
+            winningRules = new ConcurrentHashMap<>(8);
+            this.winningRules = winningRules;
+        }
+
+        Class<? extends Throwable> exceptionClass = ex.getClass();
+        RollbackRuleAttribute winner = winningRules.get(exceptionClass);
+        if(winner == null)
+        {
+            winner = determineWinningRule(exceptionClass);
+            winningRules.put(exceptionClass, winner);
+        }
+
+        // User superclass behavior (rollback on unchecked) if no rule matches
+        if(winner == NO_MATCHING_RULE)
+        {
+            return super.rollbackOn(ex);
+        }
+
+        return !(winner instanceof NoRollbackRuleAttribute);
+    }
+
+    /**
+     * Apply the rules to the given exception type, returning the rule with the
+     * lowest matching depth, or {@link #NO_MATCHING_RULE} if none applies.
+     * Only called once per exception type until the rules change
+     * @param exceptionClass
+     * @return
+     */
+    private RollbackRuleAttribute determineWinningRule(Class<? extends Throwable> exceptionClass)
+    {
        if(logger.isTraceEnabled())
        {
-           logger.trace("Applying rules to determine whether transaction should rollback on " + ex);
+           logger.trace("Applying rules to determine whether transaction should rollback on " + exceptionClass.getName());
        }
 
        RollbackRuleAttribute winner = null;
        int deepest = Integer.MAX_VALUE;
 
-       if(this.rollbackRules != null)
+       List<RollbackRuleAttribute> rules = this.rollbackRules;
+       if(rules != null)
        {
-           for(RollbackRuleAttribute rule: this.rollbackRules)
+           for(RollbackRuleAttribute rule: rules)
            {
-               int depth = rule.getDepth(ex);
+               int depth = rule.getDepth(exceptionClass);
                if(depth >=0 && depth < deepest)
                {
                    deepest = depth;
@@ -93,14 +149,12 @@ public class RuleBasedTransactionAttribute extends DefaultTransactionAttribute i
            logger.trace("Winning rollback rule is: " + winner);
        }
 
-       // User superclass behavior (rollback on unchecked) if no rule matches
         if(winner == null)
         {
             logger.trace("No relevant rollback rule found: applying default rules");
-            return super.rollbackOn(ex);
+            return NO_MATCHING_RULE;
         }
-
-        return !(winner instanceof NoRollbackRuleAttribute);
+        return winner;
     }
 
     @Override
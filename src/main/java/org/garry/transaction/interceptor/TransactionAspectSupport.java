@@ -3,15 +3,20 @@ package org.garry.transaction.interceptor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.garry.transaction.PlatformTransactionManager;
+import org.garry.transaction.TransactionDefinition;
 import org.garry.transaction.TransactionStatus;
 import org.garry.transaction.TransactionSystemException;
 import org.garry.transaction.support.CallbackPreferringPlatformTransactionManager;
+import org.garry.transaction.support.DefaultTransactionStatus;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Constants;
 import org.springframework.core.NamedThreadLocal;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
 import java.lang.reflect.Method;
 import java.util.Properties;
@@ -25,6 +30,15 @@ import java.util.concurrent.ConcurrentMap;
  */
 public abstract class TransactionAspectSupport implements BeanFactoryAware, InitializingBean {
 
+    /**
+     * Key to use to store the default transaction manager
+     */
+    private static final Object DEFAULT_TRANSACTION_MANAGER_KEY = new Object();
+
+    /**
+     * Constants of TransactionDefinition, for naming them in Flight Recorder events
+     */
+    private static final Constants constants = new Constants(TransactionDefinition.class);
 
     private static final ThreadLocal<TransactionInfo> transactionInfoHolder =
             new NamedThreadLocal<>("Current aspect-driven transaction");
@@ -75,13 +89,26 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
         return this.transactionManager;
     }
 
+    /**
+     * Set properties with method names as keys and transaction attribute
+     * descriptors (parsed via TransactionAttributeEditor) as values
+     * @param transactionAttributes
+     */
     public void setTransactionAttributes(Properties transactionAttributes)
     {
+        NameMatchTransactionAttributeSource tas = new NameMatchTransactionAttributeSource();
+        tas.setProperties(transactionAttributes);
+        this.transactionAttributeSource = tas;
     }
 
+    /**
+     * Set multiple transaction attribute sources which are used to find transaction
+     * attributes. Will build a CompositeTransactionAttributeSource
+     * @param transactionAttributeSources
+     */
     public void setTransactionAttributeSources(TransactionAttributeSource... transactionAttributeSources)
     {
-
+        this.transactionAttributeSource = new CompositeTransactionAttributeSource(transactionAttributeSources);
     }
 
     public void setTransactionAttributeSource(@Nullable TransactionAttributeSource transactionAttributeSource) {
@@ -125,7 +152,58 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
         final TransactionAttribute txAttr = (tas != null ? tas.getTransactionAttribute(method,targetClass) : null);
         final PlatformTransactionManager tm = determineTransactionManager(txAttr);
         final String jointpointIdentification = methodIdentification(method,targetClass,txAttr);
+        return invokeWithinTransaction(tm, txAttr, jointpointIdentification, invocation);
+    }
+
+    private Object invokeWithinTransaction(@Nullable final PlatformTransactionManager tm,
+                                           @Nullable final TransactionAttribute txAttr,
+                                           final String jointpointIdentification,
+                                           final InvocationCallback invocation) throws Throwable
+    {
+        TransactionalInvocationEvent event = new TransactionalInvocationEvent();
+        if(!event.isEnabled())
+        {
+            return doInvokeWithinTransaction(tm, txAttr, jointpointIdentification, invocation);
+        }
+        event.begin();
+        String outcome = "returned";
+        try {
+            return doInvokeWithinTransaction(tm, txAttr, jointpointIdentification, invocation);
+        }
+        catch (Throwable ex)
+        {
+            outcome = ex.getClass().getName();
+            throw ex;
+        }
+        finally {
+            commitInvocationEvent(event, jointpointIdentification, txAttr, outcome);
+        }
+    }
+
+    private void commitInvocationEvent(TransactionalInvocationEvent event, String joinpointIdentification,
+                                       @Nullable TransactionAttribute txAttr, String outcome)
+    {
+        event.end();
+        if(event.shouldCommit())
+        {
+            event.method = joinpointIdentification;
+            event.outcome = outcome;
+            if(txAttr != null)
+            {
+                event.transactionName = txAttr.getName();
+                event.propagation = constants.toCode(txAttr.getPropagationBehavior(), "PROPAGATION_");
+                event.isolation = constants.toCode(txAttr.getIsolationLevel(), "ISOLATION_");
+                event.readOnly = txAttr.isReadOnly();
+            }
+            event.commit();
+        }
+    }
 
+    private Object doInvokeWithinTransaction(@Nullable final PlatformTransactionManager tm,
+                                             @Nullable final TransactionAttribute txAttr,
+                                             final String jointpointIdentification,
+                                             final InvocationCallback invocation) throws Throwable
+    {
         if(txAttr == null || !(tm instanceof CallbackPreferringPlatformTransactionManager))
         {
             // Standard transaction demarcation with getTransaction and commit/rollback calls
@@ -192,36 +270,185 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
         }
     }
 
-    protected void clearTransactionManagerCache()
+    /**
+     * Resolve the transaction handling for the given method once: its attribute,
+     * transaction manager and joinpoint identification. The attribute is named
+     * after the method if it has no name of its own, as {@link #createTransactionIfNecessary} does
+     * @param method
+     * @param targetClass
+     * @return the plan, demarcating each invocation of the method
+     */
+    protected TransactionPlan createTransactionPlan(Method method, @Nullable Class<?> targetClass)
+    {
+        TransactionAttributeSource tas = getTransactionAttributeSource();
+        TransactionAttribute txAttr = (tas != null ? tas.getTransactionAttribute(method, targetClass) : null);
+        PlatformTransactionManager tm = determineTransactionManager(txAttr);
+        String joinpointIdentification = methodIdentification(method, targetClass, txAttr);
+        return new TransactionPlan(this, tm, withJoinpointName(txAttr, joinpointIdentification),
+                joinpointIdentification);
+    }
+
+    /**
+     * Begin an invocation of a planned method: the first half of
+     * {@link #invokeWithinTransaction(Method, Class, InvocationCallback)}, for callers that
+     * invoke the target themselves. Not applicable to a {@link CallbackPreferringPlatformTransactionManager}
+     * @param plan
+     * @return the TransactionInfo to pass to {@link #completePlannedInvocation} or
+     * {@link #completePlannedInvocationAfterThrowing}
+     */
+    private TransactionInfo beginPlannedInvocation(TransactionPlan plan)
+    {
+        TransactionalInvocationEvent event = new TransactionalInvocationEvent();
+        if(event.isEnabled())
+        {
+            event.begin();
+        }
+        else
+        {
+            event = null;
+        }
+        TransactionInfo txInfo;
+        try {
+            txInfo = createTransactionIfNecessary(plan.transactionManager, plan.transactionAttribute,
+                    plan.joinpointIdentification);
+        }
+        catch (RuntimeException | Error ex) {
+            if(event != null)
+            {
+                commitInvocationEvent(event, plan.joinpointIdentification, plan.transactionAttribute,
+                        ex.getClass().getName());
+            }
+            throw ex;
+        }
+        txInfo.invocationEvent = event;
+        return txInfo;
+    }
+
+    private void completePlannedInvocation(TransactionPlan plan, TransactionInfo txInfo)
+    {
+        cleanupTransactionInfo(txInfo);
+        String outcome = "returned";
+        try {
+            commitTransactionAfterReturning(txInfo);
+        }
+        catch (RuntimeException | Error ex) {
+            outcome = ex.getClass().getName();
+            throw ex;
+        }
+        finally {
+            if(txInfo.invocationEvent != null)
+            {
+                commitInvocationEvent(txInfo.invocationEvent, plan.joinpointIdentification,
+                        plan.transactionAttribute, outcome);
+            }
+        }
+    }
+
+    private void completePlannedInvocationAfterThrowing(TransactionPlan plan, TransactionInfo txInfo, Throwable ex)
     {
+        String outcome = ex.getClass().getName();
+        try {
+            completeTransactionAfterThrowing(txInfo, ex);
+        }
+        catch (RuntimeException | Error ex2) {
+            outcome = ex2.getClass().getName();
+            throw ex2;
+        }
+        finally {
+            cleanupTransactionInfo(txInfo);
+            if(txInfo.invocationEvent != null)
+            {
+                commitInvocationEvent(txInfo.invocationEvent, plan.joinpointIdentification,
+                        plan.transactionAttribute, outcome);
+            }
+        }
+    }
 
+    /**
+     * Clear the cache of transaction managers
+     */
+    protected void clearTransactionManagerCache()
+    {
+        this.transactionManagerCache.clear();
+        this.beanFactory = null;
     }
 
+    /**
+     * Determine the specific transaction manager to use for the given transaction
+     * @param txAttr
+     * @return
+     */
+    @Nullable
     protected PlatformTransactionManager determineTransactionManager(@Nullable TransactionAttribute txAttr)
     {
+        // Do not attempt to lookup tx manager if no tx attributes are set
+        if(txAttr == null || this.beanFactory == null)
+        {
+            return getTransactionManager();
+        }
 
-        return null;
+        String qualifier = txAttr.getQualifier();
+        if(StringUtils.hasText(qualifier))
+        {
+            return determineQualifiedTransactionManager(this.beanFactory, qualifier);
+        }
+        else if(StringUtils.hasText(this.transactionManagerBeanName))
+        {
+            return determineQualifiedTransactionManager(this.beanFactory, this.transactionManagerBeanName);
+        }
+        else
+        {
+            PlatformTransactionManager defaultTransactionManager = getTransactionManager();
+            if(defaultTransactionManager == null)
+            {
+                defaultTransactionManager = this.transactionManagerCache.get(DEFAULT_TRANSACTION_MANAGER_KEY);
+                if(defaultTransactionManager == null)
+                {
+                    defaultTransactionManager = this.beanFactory.getBean(PlatformTransactionManager.class);
+                    this.transactionManagerCache.putIfAbsent(
+                            DEFAULT_TRANSACTION_MANAGER_KEY, defaultTransactionManager);
+                }
+            }
+            return defaultTransactionManager;
+        }
+    }
+
+    private PlatformTransactionManager determineQualifiedTransactionManager(BeanFactory beanFactory, String qualifier)
+    {
+        PlatformTransactionManager txManager = this.transactionManagerCache.get(qualifier);
+        if(txManager == null)
+        {
+            txManager = beanFactory.getBean(qualifier, PlatformTransactionManager.class);
+            this.transactionManagerCache.putIfAbsent(qualifier, txManager);
+        }
+        return txManager;
     }
 
     private String methodIdentification(Method method, @Nullable Class<?> targetClass,
                                         @Nullable TransactionAttribute txAttr)
     {
-        return null;
+        String methodIdentification = null;
+        if(txAttr instanceof DefaultTransactionAttribute)
+        {
+            methodIdentification = ((DefaultTransactionAttribute) txAttr).getDescriptor();
+        }
+        if(methodIdentification == null)
+        {
+            methodIdentification = ClassUtils.getQualifiedMethodName(method, targetClass);
+        }
+        return methodIdentification;
     }
 
     /**
-     * Create a transaction if necessary based on the given TransactionAttribute
-     * Allows callers to perform custom TransactionAttribute lookups through
-     * thr TransactionAttributeSource
-     * @param tm
+     * Apply the joinpoint identification as transaction name if the attribute has none
      * @param txAttr
-     * @param joinpointIdentification the fully qualified method name(used for monitoring and logging purposes)
+     * @param joinpointIdentification
      * @return
      */
-    protected TransactionInfo createTransactionIfNecessary(@Nullable PlatformTransactionManager tm,
-                                                           @Nullable TransactionAttribute txAttr, final String joinpointIdentification)
+    @Nullable
+    private TransactionAttribute withJoinpointName(@Nullable TransactionAttribute txAttr,
+                                                   final String joinpointIdentification)
     {
-        // If no name specified, apply method identification as transaction name
         if(txAttr != null && txAttr.getName() == null)
         {
             txAttr = new DelegatingTransactionAttribute(txAttr)
@@ -232,6 +459,23 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
                 }
             };
         }
+        return txAttr;
+    }
+
+    /**
+     * Create a transaction if necessary based on the given TransactionAttribute
+     * Allows callers to perform custom TransactionAttribute lookups through
+     * thr TransactionAttributeSource
+     * @param tm
+     * @param txAttr
+     * @param joinpointIdentification the fully qualified method name(used for monitoring and logging purposes)
+     * @return
+     */
+    protected TransactionInfo createTransactionIfNecessary(@Nullable PlatformTransactionManager tm,
+                                                           @Nullable TransactionAttribute txAttr, final String joinpointIdentification)
+    {
+        // If no name specified, apply method identification as transaction name
+        txAttr = withJoinpointName(txAttr, joinpointIdentification);
 
         TransactionStatus status = null;
         if(txAttr != null)
@@ -324,6 +568,10 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
                 logger.trace("Completing transaction for [" + txInfo.getJoinpointIdentification() +
                         "] after exception: " + ex);
             }
+            if(txInfo.getTransactionStatus() instanceof DefaultTransactionStatus)
+            {
+                ((DefaultTransactionStatus) txInfo.getTransactionStatus()).setRollbackCause(ex);
+            }
             if(txInfo.transactionAttribute != null && txInfo.transactionAttribute.rollbackOn(ex))
             {
                 try {
@@ -367,9 +615,17 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
         }
     }
 
+    /**
+     * Reset the TransactionInfo ThreadLocal.
+     * Call this in all cases: exception or normal return
+     * @param txInfo
+     */
     protected void cleanupTransactionInfo(@Nullable TransactionInfo txInfo)
     {
-
+        if(txInfo != null)
+        {
+            txInfo.restoreThreadLocalStatus();
+        }
     }
 
 
@@ -380,6 +636,87 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
         Object proceedWithInvocation() throws Throwable;
     }
 
+    /**
+     * Transaction handling for one method, resolved up front: the transaction manager,
+     * the attribute (if the method is transactional) and the joinpoint identification.
+     * <p>Public, since generated proxies call {@link #begin}, {@link #complete} and
+     * {@link #completeAfterThrowing} around their direct call to the target
+     */
+    public static final class TransactionPlan {
+
+        private final TransactionAspectSupport transactionAspect;
+
+        @Nullable
+        private final PlatformTransactionManager transactionManager;
+
+        @Nullable
+        private final TransactionAttribute transactionAttribute;
+
+        private final String joinpointIdentification;
+
+        TransactionPlan(TransactionAspectSupport transactionAspect,
+                        @Nullable PlatformTransactionManager transactionManager,
+                        @Nullable TransactionAttribute transactionAttribute, String joinpointIdentification) {
+            this.transactionAspect = transactionAspect;
+            this.transactionManager = transactionManager;
+            this.transactionAttribute = transactionAttribute;
+            this.joinpointIdentification = joinpointIdentification;
+        }
+
+        @Nullable
+        public PlatformTransactionManager getTransactionManager() {
+            return this.transactionManager;
+        }
+
+        @Nullable
+        public TransactionAttribute getTransactionAttribute() {
+            return this.transactionAttribute;
+        }
+
+        public String getJoinpointIdentification() {
+            return this.joinpointIdentification;
+        }
+
+        /**
+         * Return whether the method needs transaction demarcation at all
+         * @return
+         */
+        public boolean isTransactional() {
+            return (this.transactionAttribute != null);
+        }
+
+        /**
+         * Begin an invocation of the method, creating a transaction if necessary
+         * @return the TransactionInfo to pass to {@link #complete} or {@link #completeAfterThrowing}
+         */
+        public TransactionInfo begin() {
+            return this.transactionAspect.beginPlannedInvocation(this);
+        }
+
+        /**
+         * Complete an invocation that returned normally, committing the transaction
+         * @param txInfo
+         */
+        public void complete(TransactionInfo txInfo) {
+            this.transactionAspect.completePlannedInvocation(this, txInfo);
+        }
+
+        /**
+         * Complete an invocation that threw the given exception. The caller rethrows it
+         * @param txInfo
+         * @param ex
+         */
+        public void completeAfterThrowing(TransactionInfo txInfo, Throwable ex) {
+            this.transactionAspect.completePlannedInvocationAfterThrowing(this, txInfo, ex);
+        }
+
+        @Override
+        public String toString() {
+            return this.joinpointIdentification + ": " +
+                    (this.transactionAttribute != null ? this.transactionAttribute.toString() : "No transaction");
+        }
+    }
+
     /**
      * Opaque object used to hold Transaction information. Subclasses
      * must pass it back to methods on this class, but not see its internals
@@ -400,6 +737,12 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
         @Nullable
         private TransactionInfo oldTransactionInfo;
 
+        /**
+         * Flight Recorder event of an invocation through a {@link TransactionPlan}, if recording
+         */
+        @Nullable
+        private TransactionalInvocationEvent invocationEvent;
+
         public TransactionInfo(@Nullable PlatformTransactionManager transactionManager,
                                @Nullable TransactionAttribute transactionAttribute, String joinpointIdentification) {
             this.transactionManager = transactionManager;
@@ -486,13 +829,15 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 
     /**
      * Internal holder class for a Throwable, used as a RuntimeException to be
-     * thrown from a TransactionCallback (and subsequently unwrapped again)
+     * thrown from a TransactionCallback (and subsequently unwrapped again).
+     * Never seen by callers, so it skips filling in a stack trace of its own:
+     * the wrapped Throwable already carries the relevant one
      */
     private static class ThrowableHolderException extends RuntimeException
     {
         public ThrowableHolderException(Throwable throwable)
         {
-            super(throwable);
+            super(null, throwable, false, false);
         }
 
         @Override
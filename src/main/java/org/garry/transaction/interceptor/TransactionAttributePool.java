@@ -0,0 +1,239 @@
+package org.garry.transaction.interceptor;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @ClassName TransactionAttributePool
+ * @Description Pool of shared, read-only {@link TransactionAttribute} instances.
+ * Identical definitions (same propagation, isolation, timeout, read-only flag,
+ * qualifier and rollback rules) are resolved to one canonical instance, and
+ * definitions in the String form understood by {@link TransactionAttributeEditor}
+ * are parsed only once per distinct text.
+ * <p>Only plain {@link DefaultTransactionAttribute} and {@link RuleBasedTransactionAttribute}
+ * instances without a name are pooled; anything else is returned as-is.
+ * Pooled instances reject any change to their definition, rollback rules or name,
+ * and ignore descriptors, since they are shared between many methods
+ * @Author cy
+ * @Date 2021/5/8 20:31
+ */
+public class TransactionAttributePool {
+
+    private static final TransactionAttributePool sharedInstance = new TransactionAttributePool();
+
+    /**
+     * Canonical value held in the text cache for text that denotes a non-transactional method
+     */
+    private static final TransactionAttribute NULL_TRANSACTION_ATTRIBUTE = new DefaultTransactionAttribute();
+
+    /**
+     * Canonical attributes, keyed by their definition
+     */
+    private final ConcurrentMap<Object, TransactionAttribute> attributes = new ConcurrentHashMap<>(64);
+
+    /**
+     * Canonical attributes, keyed by the text they were parsed from
+     */
+    private final ConcurrentMap<String, TransactionAttribute> parsedAttributes = new ConcurrentHashMap<>(64);
+
+    /**
+     * Return the pool shared within this class loader
+     * @return
+     */
+    public static TransactionAttributePool getSharedInstance()
+    {
+        return sharedInstance;
+    }
+
+    /**
+     * Return the canonical instance for the given attribute
+     * @param attr the attribute to intern
+     * @return a shared instance equivalent to the given attribute,
+     * or the given attribute itself if it cannot be pooled
+     */
+    public TransactionAttribute intern(TransactionAttribute attr)
+    {
+        Assert.notNull(attr, "TransactionAttribute must not be null");
+        if(attr instanceof SharedTransactionAttribute || !isPoolable(attr))
+        {
+            return attr;
+        }
+        SharedTransactionAttribute candidate = new SharedTransactionAttribute(attr);
+        TransactionAttribute shared = this.attributes.putIfAbsent(new AttributeKey(candidate), candidate);
+        if(shared == null)
+        {
+            shared = candidate;
+        }
+        return shared;
+    }
+
+    /**
+     * Parse the given String form into a canonical attribute, parsing each
+     * distinct text only once
+     * @param text the attribute definition, see {@link TransactionAttributeEditor}
+     * @return the shared attribute, or {@code null} if the text denotes a
+     * non-transactional method
+     * @throws IllegalArgumentException if the text is not a valid definition
+     */
+    @Nullable
+    public TransactionAttribute parse(@Nullable String text) throws IllegalArgumentException
+    {
+        if(!StringUtils.hasLength(text))
+        {
+            return null;
+        }
+        TransactionAttribute attr = this.parsedAttributes.get(text);
+        if(attr == null)
+        {
+            TransactionAttributeEditor tae = new TransactionAttributeEditor();
+            tae.setAsText(text);
+            TransactionAttribute parsed = (TransactionAttribute) tae.getValue();
+            attr = (parsed != null ? intern(parsed) : NULL_TRANSACTION_ATTRIBUTE);
+            this.parsedAttributes.put(text, attr);
+        }
+        return (attr == NULL_TRANSACTION_ATTRIBUTE ? null : attr);
+    }
+
+    /**
+     * Return the number of distinct attributes in this pool
+     * @return
+     */
+    public int size()
+    {
+        return this.attributes.size();
+    }
+
+    /**
+     * Remove all pooled attributes. Instances handed out before remain valid,
+     * but are no longer shared with subsequently interned ones
+     */
+    public void clear()
+    {
+        this.attributes.clear();
+        this.parsedAttributes.clear();
+    }
+
+    private boolean isPoolable(TransactionAttribute attr)
+    {
+        Class<?> attrClass = attr.getClass();
+        return ((attrClass == DefaultTransactionAttribute.class || attrClass == RuleBasedTransactionAttribute.class) &&
+                attr.getName() == null);
+    }
+
+    /**
+     * Identity of a transaction attribute definition: its description covers propagation,
+     * isolation, timeout, read-only flag, qualifier and the rule patterns, while the rules
+     * themselves distinguish class-based rules from name patterns
+     */
+    private static final class AttributeKey
+    {
+        private final String description;
+
+        private final List<RollbackRuleAttribute> rollbackRules;
+
+        AttributeKey(SharedTransactionAttribute attr)
+        {
+            this.description = attr.toString();
+            this.rollbackRules = attr.getRollbackRules();
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if(this == other)
+            {
+                return true;
+            }
+            if(!(other instanceof AttributeKey))
+            {
+                return false;
+            }
+            AttributeKey otherKey = (AttributeKey) other;
+            return (this.description.equals(otherKey.description) && this.rollbackRules.equals(otherKey.rollbackRules));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.description, this.rollbackRules);
+        }
+    }
+
+    /**
+     * Read-only copy of a rule-based attribute, handed out by the pool.
+     * All mutators throw; the constructor initializes through the superclass setters
+     */
+    private static final class SharedTransactionAttribute extends RuleBasedTransactionAttribute
+    {
+        private final List<RollbackRuleAttribute> rollbackRules;
+
+        SharedTransactionAttribute(TransactionAttribute original)
+        {
+            super.setPropagationBehavior(original.getPropagationBehavior());
+            super.setIsolationLevel(original.getIsolationLevel());
+            super.setTimeout(original.getTimeout());
+            super.setReadOnly(original.isReadOnly());
+            List<RollbackRuleAttribute> rules = (original instanceof RuleBasedTransactionAttribute ?
+                    ((RuleBasedTransactionAttribute) original).getRollbackRules() : null);
+            this.rollbackRules = (rules != null ?
+                    Collections.unmodifiableList(new ArrayList<>(rules)) : Collections.emptyList());
+            super.setRollbackRules(this.rollbackRules);
+        }
+
+        @Override
+        public void setPropagationBehavior(int propagationBehavior)
+        {
+            throw new UnsupportedOperationException("Pooled transaction attributes are read-only");
+        }
+
+        @Override
+        public void setIsolationLevel(int isolationLevel)
+        {
+            throw new UnsupportedOperationException("Pooled transaction attributes are read-only");
+        }
+
+        @Override
+        public void setTimeout(int timeout)
+        {
+            throw new UnsupportedOperationException("Pooled transaction attributes are read-only");
+        }
+
+        @Override
+        public void setReadOnly(boolean readOnly)
+        {
+            throw new UnsupportedOperationException("Pooled transaction attributes are read-only");
+        }
+
+        @Override
+        public void setRollbackRules(@Nullable List<RollbackRuleAttribute> rollbackRules)
+        {
+            throw new UnsupportedOperationException("Pooled transaction attributes are read-only");
+        }
+
+        @Override
+        public List<RollbackRuleAttribute> getRollbackRules()
+        {
+            return this.rollbackRules;
+        }
+
+        @Override
+        public void setName(String name)
+        {
+            throw new UnsupportedOperationException("Pooled transaction attributes are read-only");
+        }
+
+        @Override
+        public void setDescriptor(@Nullable String descriptor)
+        {
+            // Shared between methods: no per-method descriptor
+        }
+    }
+}
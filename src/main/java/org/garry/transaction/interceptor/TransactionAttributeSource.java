@@ -6,6 +6,23 @@ import java.lang.reflect.Method;
 
 public interface TransactionAttributeSource {
 
+    /**
+     * Determine whether the given class is a candidate for transaction attributes
+     * in the metadata format of this {@code TransactionAttributeSource}.
+     * If this method returns {@code false}, the methods on the given class
+     * will not get traversed for {@link #getTransactionAttribute} introspection.
+     * Returning {@code false} is therefore an optimization for non-affected
+     * classes, whereas {@code true} simply means that the class needs to get
+     * fully introspected for each method on the given class individually.
+     * The default implementation returns {@code true}, leading to regular introspection
+     * @param targetClass the class to introspect
+     * @return
+     */
+    default boolean isCandidateClass(Class<?> targetClass)
+    {
+        return true;
+    }
+
     @Nullable
     TransactionAttribute getTransactionAttribute(Method method, @Nullable Class<?> targetClass);
 }
@@ -1,5 +1,7 @@
 package org.garry.transaction.interceptor;
 
+import org.garry.transaction.PlatformTransactionManager;
+import org.springframework.aop.ClassFilter;
 import org.springframework.aop.support.StaticMethodMatcherPointcut;
 import org.springframework.util.ObjectUtils;
 
@@ -15,6 +17,10 @@ import java.lang.reflect.Method;
  */
 abstract class TransactionAttributeSourcePointcut extends StaticMethodMatcherPointcut implements Serializable {
 
+    protected TransactionAttributeSourcePointcut() {
+        setClassFilter(new TransactionAttributeSourceClassFilter());
+    }
+
     @Override
     public boolean matches(Method method, Class<?> targetClass) {
        if(targetClass != null && TransactionalProxy.class.isAssignableFrom(targetClass))
@@ -58,4 +64,22 @@ abstract class TransactionAttributeSourcePointcut extends StaticMethodMatcherPoi
      * @return
      */
     protected abstract TransactionAttributeSource getTransactionAttributeSource();
+
+    /**
+     * {@link ClassFilter} that delegates to {@link TransactionAttributeSource#isCandidateClass}
+     * for filtering classes whose methods are not worth searching to begin with
+     */
+    private class TransactionAttributeSourceClassFilter implements ClassFilter {
+
+        @Override
+        public boolean matches(Class<?> clazz) {
+            if(TransactionalProxy.class.isAssignableFrom(clazz) ||
+                    PlatformTransactionManager.class.isAssignableFrom(clazz))
+            {
+                return false;
+            }
+            TransactionAttributeSource tas = getTransactionAttributeSource();
+            return (tas == null || tas.isCandidateClass(clazz));
+        }
+    }
 }
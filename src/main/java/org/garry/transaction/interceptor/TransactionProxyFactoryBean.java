@@ -4,18 +4,23 @@ import org.garry.transaction.PlatformTransactionManager;
 import org.springframework.aop.Pointcut;
 import org.springframework.aop.framework.AbstractSingletonProxyFactoryBean;
 import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.aop.support.DefaultPointcutAdvisor;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import java.util.Properties;
 
 /**
  * Proxy factory bean for simplified declarative transaction handling.
  * This is a convenient alternative to a standard AOP
- *
+ * <p>With {@link #setDirectProxy "directProxy"} enabled, a proxy class is generated that
+ * calls the target directly, with transaction plans resolved once per method,
+ * instead of an AOP proxy running the interceptor chain on every call
  */
 public class TransactionProxyFactoryBean extends AbstractSingletonProxyFactoryBean
         implements BeanFactoryAware{
@@ -25,6 +30,20 @@ public class TransactionProxyFactoryBean extends AbstractSingletonProxyFactoryBe
     @Nullable
     private Pointcut pointcut;
 
+    private boolean directProxy = false;
+
+    @Nullable
+    private Object target;
+
+    @Nullable
+    private Class<?>[] proxyInterfaces;
+
+    @Nullable
+    private ClassLoader proxyClassLoader = ClassUtils.getDefaultClassLoader();
+
+    @Nullable
+    private Object directProxyObject;
+
     public void setTransactionManager(PlatformTransactionManager transactionManager)
     {
         this.transactionInterceptor.setTransactionManager(transactionManager);
@@ -45,6 +64,80 @@ public class TransactionProxyFactoryBean extends AbstractSingletonProxyFactoryBe
         this.pointcut = pointcut;
     }
 
+    /**
+     * Set whether to create a direct proxy: a generated class implementing the proxy interfaces
+     * (or all interfaces of the target) that resolves the transaction attribute, transaction
+     * manager and transaction name of each method once, at creation time, and calls the
+     * target without reflection. Commit and rollback behave as with the default AOP proxy.
+     * Not compatible with a custom pointcut, pre/post interceptors, a TargetSource
+     * as target or a CallbackPreferringPlatformTransactionManager. Default is "false"
+     * @param directProxy
+     */
+    public void setDirectProxy(boolean directProxy)
+    {
+        this.directProxy = directProxy;
+    }
+
+    @Override
+    public void setTarget(Object target) {
+        super.setTarget(target);
+        this.target = target;
+    }
+
+    @Override
+    public void setProxyInterfaces(Class<?>[] proxyInterfaces) {
+        super.setProxyInterfaces(proxyInterfaces);
+        this.proxyInterfaces = proxyInterfaces;
+    }
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        super.setBeanClassLoader(classLoader);
+        this.proxyClassLoader = classLoader;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if(this.directProxy)
+        {
+            this.directProxyObject = createDirectProxy();
+        }
+        else
+        {
+            super.afterPropertiesSet();
+        }
+    }
+
+    @Override
+    public Object getObject() {
+        if(this.directProxyObject != null)
+        {
+            return this.directProxyObject;
+        }
+        return super.getObject();
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        if(this.directProxyObject != null)
+        {
+            return this.directProxyObject.getClass();
+        }
+        return super.getObjectType();
+    }
+
+    private Object createDirectProxy()
+    {
+        Assert.state(this.target != null, "Property 'target' is required");
+        Assert.state(this.pointcut == null, "Direct proxies do not support a custom pointcut");
+        this.transactionInterceptor.afterPropertiesSet();
+        Class<?>[] interfaces = (this.proxyInterfaces != null ? this.proxyInterfaces :
+                ClassUtils.getAllInterfacesForClass(this.target.getClass()));
+        Assert.state(interfaces.length > 0, "Direct proxies require at least one proxy interface");
+        return DirectTransactionProxyGenerator.createProxy(this.target, AopUtils.getTargetClass(this.target),
+                interfaces, this.transactionInterceptor, this.proxyClassLoader);
+    }
+
 
 
     @Override
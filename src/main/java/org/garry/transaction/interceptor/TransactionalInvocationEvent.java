@@ -0,0 +1,39 @@
+package org.garry.transaction.interceptor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning a method invocation through
+ * {@link TransactionAspectSupport}, including transaction begin and completion
+ */
+@Name("org.garry.transaction.TransactionalInvocation")
+@Label("Transactional Invocation")
+@Category({"Spring", "Transaction"})
+@Description("Method invocation demarcated by a transaction interceptor")
+@StackTrace(false)
+class TransactionalInvocationEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Transaction Name")
+    String transactionName;
+
+    @Label("Propagation")
+    String propagation;
+
+    @Label("Isolation")
+    String isolation;
+
+    @Label("Read-only")
+    boolean readOnly;
+
+    @Label("Outcome")
+    @Description("'returned', or the class name of the exception thrown by the invocation")
+    String outcome;
+}
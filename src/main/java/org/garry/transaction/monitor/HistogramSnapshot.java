@@ -0,0 +1,105 @@
+package org.garry.transaction.monitor;
+
+/**
+ * Immutable point-in-time view of a {@link LogLinearHistogram}
+ */
+public final class HistogramSnapshot {
+
+    private final long[] bucketCounts;
+
+    private final long count;
+
+    private final long sum;
+
+    private final long max;
+
+    HistogramSnapshot(long[] bucketCounts, long count, long sum, long max)
+    {
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    public long getSum()
+    {
+        return this.sum;
+    }
+
+    public long getMax()
+    {
+        return this.max;
+    }
+
+    public double getMean()
+    {
+        return (this.count > 0 ? (double) this.sum / this.count : 0);
+    }
+
+    /**
+     * Return the value at the given percentile, as the upper bound of the bucket
+     * it falls into (capped at the maximum recorded value)
+     * @param percentile between 0 and 100
+     * @return
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if(this.count == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * this.count);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for(int i = 0; i < this.bucketCounts.length; i++)
+        {
+            seen += this.bucketCounts[i];
+            if(seen >= rank)
+            {
+                return Math.min(LogLinearHistogram.bucketUpperBound(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Return the number of buckets, for exporting the full distribution
+     * @return
+     */
+    public int getBucketCount()
+    {
+        return this.bucketCounts.length;
+    }
+
+    /**
+     * Return the number of values recorded in the given bucket
+     * @param index
+     * @return
+     */
+    public long getBucketCountAt(int index)
+    {
+        return this.bucketCounts[index];
+    }
+
+    /**
+     * Return the largest value falling into the given bucket
+     * @param index
+     * @return
+     */
+    public long getBucketUpperBound(int index)
+    {
+        return LogLinearHistogram.bucketUpperBound(index);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "count=" + this.count + ", mean=" + (long) getMean() + ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) + ", max=" + this.max;
+    }
+}
@@ -0,0 +1,150 @@
+package org.garry.transaction.monitor;
+
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A transaction scope currently registered with an {@link InFlightTransactionRegistry}.
+ * Immutable apart from the registry's internal linkage
+ */
+public final class InFlightTransaction {
+
+    private static final Object[] NO_KEYS = new Object[0];
+
+    @Nullable
+    private final String name;
+
+    @Nullable
+    private final String propagation;
+
+    private final boolean newTransaction;
+
+    private final long startNanos;
+
+    private final Thread thread;
+
+    private final int suspendedDepth;
+
+    private final Object[] resourceKeys;
+
+    final DefaultTransactionStatus status;
+
+    @Nullable
+    final InFlightTransaction outer;
+
+    // Set when completed out of stack order, until the owning thread pops it
+    volatile boolean completed;
+
+    InFlightTransaction(DefaultTransactionStatus status, @Nullable String name, @Nullable String propagation,
+                        boolean newTransaction, long startNanos, Thread thread, int suspendedDepth,
+                        @Nullable Object[] resourceKeys, @Nullable InFlightTransaction outer)
+    {
+        this.status = status;
+        this.name = name;
+        this.propagation = propagation;
+        this.newTransaction = newTransaction;
+        this.startNanos = startNanos;
+        this.thread = thread;
+        this.suspendedDepth = suspendedDepth;
+        this.resourceKeys = (resourceKeys != null ? resourceKeys : NO_KEYS);
+        this.outer = outer;
+    }
+
+    @Nullable
+    public String getName()
+    {
+        return this.name;
+    }
+
+    @Nullable
+    public String getPropagation()
+    {
+        return this.propagation;
+    }
+
+    /**
+     * Return whether this scope started a physical transaction
+     * @return
+     */
+    public boolean isNewTransaction()
+    {
+        return this.newTransaction;
+    }
+
+    /**
+     * Return the {@link System#nanoTime()} value at which this scope was requested
+     * @return
+     */
+    public long getStartNanos()
+    {
+        return this.startNanos;
+    }
+
+    /**
+     * Return the wall-clock start time, derived from {@link #getStartNanos()}
+     * @return
+     */
+    public long getStartMillis()
+    {
+        return System.currentTimeMillis() - getElapsedNanos() / 1_000_000;
+    }
+
+    /**
+     * Return the time this scope has been running so far
+     * @return
+     */
+    public long getElapsedNanos()
+    {
+        return System.nanoTime() - this.startNanos;
+    }
+
+    /**
+     * Return the thread that began this scope
+     * @return
+     */
+    public Thread getThread()
+    {
+        return this.thread;
+    }
+
+    /**
+     * Return the number of transactions suspended on the owning thread
+     * underneath this one
+     * @return
+     */
+    public int getSuspendedDepth()
+    {
+        return this.suspendedDepth;
+    }
+
+    /**
+     * Return the string representations of the resource keys bound to the
+     * owning thread when this scope began
+     * @return
+     */
+    public List<String> getResourceKeys()
+    {
+        if(this.resourceKeys.length == 0)
+        {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>(this.resourceKeys.length);
+        for(Object key: this.resourceKeys)
+        {
+            keys.add(String.valueOf(key));
+        }
+        return keys;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + this.name + "] " + this.propagation + (this.newTransaction ? " (new)" : "") +
+                ", running " + getElapsedNanos() / 1_000_000 + " ms on thread '" + this.thread.getName() +
+                "', suspended depth " + this.suspendedDepth + ", resources " + getResourceKeys();
+    }
+}
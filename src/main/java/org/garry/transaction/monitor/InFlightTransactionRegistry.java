@@ -0,0 +1,360 @@
+package org.garry.transaction.monitor;
+
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionOutcome;
+import org.garry.transaction.support.TransactionSynchronizationManager;
+import org.springframework.lang.Nullable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TransactionMonitor} keeping track of all transaction scopes currently in flight:
+ * each status is registered when {@code getTransaction} returns and removed once it has
+ * been completed and cleaned up.
+ *
+ * Registrations are striped by thread: each thread pushes its scopes onto its own stack,
+ * linked through {@link InFlightTransaction}s and published with a single volatile write,
+ * so beginning and completing a scope on its own thread takes no lock and touches no
+ * shared structure. Only the first scope of a thread adds its stack to the copy-on-write
+ * array of all stacks. Readers walk those stacks, which makes {@link #snapshot()} and the
+ * MBean view proportional to the number of threads that have used this registry;
+ * {@link #getActiveTransactionCount()} and {@link #getLongestRunningMillis()} do so
+ * without allocating, for frequently scraped gauges.
+ *
+ * Registering only records what is at hand; propagation names come from a static table
+ * and the start time is the status's own {@link DefaultTransactionStatus#getStartNanos()}.
+ * The keys of the resources bound at that point, typically one or two, are copied, since
+ * the owning thread's resource map cannot be read safely from other threads.
+ *
+ * The live view is available via {@link #snapshot()} and, once
+ * {@link #registerMBean registered}, as the {@link InFlightTransactionsMBean} via JMX.
+ * Requires {@link DefaultTransactionStatus#getStartNanos()}, i.e. registration with the
+ * transaction manager as monitor
+ */
+public class InFlightTransactionRegistry implements TransactionMonitor, InFlightTransactionsMBean {
+
+    /**
+     * Default JMX object name
+     */
+    public static final String DEFAULT_OBJECT_NAME = "org.garry.transaction:type=InFlightTransactions";
+
+    // Indexed by the PROPAGATION_* constant values
+    private static final String[] PROPAGATION_NAMES = {
+            "PROPAGATION_REQUIRED", "PROPAGATION_SUPPORTS", "PROPAGATION_MANDATORY", "PROPAGATION_REQUIRES_NEW",
+            "PROPAGATION_NOT_SUPPORTED", "PROPAGATION_NEVER", "PROPAGATION_NESTED"};
+
+    private static final Comparator<InFlightTransaction> LONGEST_RUNNING_FIRST =
+            Comparator.comparingLong(InFlightTransaction::getStartNanos);
+
+    private static final ThreadTransactions[] NO_THREAD_TRANSACTIONS = new ThreadTransactions[0];
+
+    // Guards replacing allThreadTransactions
+    private final Object allThreadTransactionsMonitor = new Object();
+
+    private volatile ThreadTransactions[] allThreadTransactions = NO_THREAD_TRANSACTIONS;
+
+    private final ThreadLocal<ThreadTransactions> threadTransactions =
+            ThreadLocal.withInitial(this::registerThreadTransactions);
+
+    @Nullable
+    private MBeanServer mbeanServer;
+
+    @Nullable
+    private ObjectName objectName;
+
+    @Override
+    public void afterBegin(DefaultTransactionStatus status, long beginNanos)
+    {
+        TransactionDefinition definition = status.getDefinition();
+        String name = null;
+        String propagation = null;
+        if(definition != null)
+        {
+            name = definition.getName();
+            int behavior = definition.getPropagationBehavior();
+            if(behavior >= 0 && behavior < PROPAGATION_NAMES.length)
+            {
+                propagation = PROPAGATION_NAMES[behavior];
+            }
+        }
+        ThreadTransactions transactions = this.threadTransactions.get();
+        InFlightTransaction outer = transactions.top;
+        while(outer != null && outer.completed)
+        {
+            outer = outer.outer;
+        }
+        int suspendedDepth = (outer == null ? 0 :
+                outer.getSuspendedDepth() + (status.getSuspendedResources() != null ? 1 : 0));
+        Map<Object,Object> resources = TransactionSynchronizationManager.getResourceMap();
+        transactions.top = new InFlightTransaction(status, name, propagation, status.isNewTransaction(),
+                status.getStartNanos(), transactions.thread, suspendedDepth,
+                (resources.isEmpty() ? null : resources.keySet().toArray()), outer);
+    }
+
+    @Override
+    public void afterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome, long durationNanos)
+    {
+        ThreadTransactions transactions = this.threadTransactions.get();
+        InFlightTransaction top = transactions.top;
+        if(top != null && top.status == status)
+        {
+            transactions.pop(top);
+            return;
+        }
+        // Completed out of stack order or on another thread: mark it for its owner to pop
+        for(ThreadTransactions candidate: this.allThreadTransactions)
+        {
+            for(InFlightTransaction transaction = candidate.top; transaction != null; transaction = transaction.outer)
+            {
+                if(transaction.status == status)
+                {
+                    transaction.completed = true;
+                    if(candidate == transactions && top.completed)
+                    {
+                        transactions.pop(top);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the stack of the current thread, registering it for readers. Stacks of
+     * threads that have terminated since are dropped on the way
+     * @return
+     */
+    private ThreadTransactions registerThreadTransactions()
+    {
+        ThreadTransactions transactions = new ThreadTransactions(Thread.currentThread());
+        synchronized(this.allThreadTransactionsMonitor)
+        {
+            ThreadTransactions[] live = liveThreadTransactions(this.allThreadTransactions);
+            ThreadTransactions[] all = Arrays.copyOf(live, live.length + 1);
+            all[live.length] = transactions;
+            this.allThreadTransactions = all;
+        }
+        return transactions;
+    }
+
+    /**
+     * Drop the stacks of threads that have terminated
+     */
+    private void pruneThreadTransactions()
+    {
+        synchronized(this.allThreadTransactionsMonitor)
+        {
+            this.allThreadTransactions = liveThreadTransactions(this.allThreadTransactions);
+        }
+    }
+
+    /**
+     * Return the given stacks without those of terminated threads, or the given array
+     * itself if all of their threads are alive
+     * @param all
+     * @return
+     */
+    private static ThreadTransactions[] liveThreadTransactions(ThreadTransactions[] all)
+    {
+        int live = 0;
+        for(ThreadTransactions transactions: all)
+        {
+            if(transactions.thread.isAlive())
+            {
+                live++;
+            }
+        }
+        if(live == all.length)
+        {
+            return all;
+        }
+        ThreadTransactions[] result = new ThreadTransactions[live];
+        int index = 0;
+        for(ThreadTransactions transactions: all)
+        {
+            if(transactions.thread.isAlive())
+            {
+                result[index++] = transactions;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the transaction scopes currently in flight, longest running first.
+     * Stacks of threads that have terminated are dropped on the way
+     * @return
+     */
+    public List<InFlightTransaction> snapshot()
+    {
+        pruneThreadTransactions();
+        List<InFlightTransaction> snapshot = new ArrayList<>();
+        for(ThreadTransactions transactions: this.allThreadTransactions)
+        {
+            for(InFlightTransaction transaction = transactions.top; transaction != null; transaction = transaction.outer)
+            {
+                if(!transaction.completed)
+                {
+                    snapshot.add(transaction);
+                }
+            }
+        }
+        snapshot.sort(LONGEST_RUNNING_FIRST);
+        return snapshot;
+    }
+
+    /**
+     * Count the transaction scopes currently in flight by walking the per-thread stacks,
+     * without allocating. Stacks of terminated threads are skipped
+     * @return
+     */
+    @Override
+    public int getActiveTransactionCount()
+    {
+        int count = 0;
+        ThreadTransactions[] all = this.allThreadTransactions;
+        for(int i = 0; i < all.length; i++)
+        {
+            if(!all[i].thread.isAlive())
+            {
+                continue;
+            }
+            for(InFlightTransaction transaction = all[i].top; transaction != null; transaction = transaction.outer)
+            {
+                if(!transaction.completed)
+                {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return how long the longest running transaction scope has been in flight, walking
+     * the per-thread stacks without allocating
+     * @return
+     */
+    @Override
+    public long getLongestRunningMillis()
+    {
+        boolean found = false;
+        long earliestStartNanos = 0;
+        ThreadTransactions[] all = this.allThreadTransactions;
+        for(int i = 0; i < all.length; i++)
+        {
+            if(!all[i].thread.isAlive())
+            {
+                continue;
+            }
+            for(InFlightTransaction transaction = all[i].top; transaction != null; transaction = transaction.outer)
+            {
+                if(!transaction.completed && (!found || transaction.getStartNanos() - earliestStartNanos < 0))
+                {
+                    earliestStartNanos = transaction.getStartNanos();
+                    found = true;
+                }
+            }
+        }
+        return (found ? (System.nanoTime() - earliestStartNanos) / 1_000_000 : 0);
+    }
+
+    @Override
+    public String[] getActiveTransactions()
+    {
+        return getTransactionsRunningLongerThan(0);
+    }
+
+    @Override
+    public String[] getTransactionsRunningLongerThan(long minMillis)
+    {
+        List<String> descriptions = new ArrayList<>();
+        for(InFlightTransaction transaction: snapshot())
+        {
+            if(transaction.getElapsedNanos() / 1_000_000 >= minMillis)
+            {
+                descriptions.add(transaction.toString());
+            }
+        }
+        return descriptions.toArray(new String[0]);
+    }
+
+    /**
+     * Register this registry with the platform MBean server under {@link #DEFAULT_OBJECT_NAME}
+     * @throws JMException
+     */
+    public void registerMBean() throws JMException
+    {
+        registerMBean(ManagementFactory.getPlatformMBeanServer(), new ObjectName(DEFAULT_OBJECT_NAME));
+    }
+
+    /**
+     * Register this registry with the given MBean server
+     * @param server
+     * @param objectName
+     * @throws JMException
+     */
+    public void registerMBean(MBeanServer server, ObjectName objectName) throws JMException
+    {
+        server.registerMBean(new StandardMBean(this, InFlightTransactionsMBean.class), objectName);
+        this.mbeanServer = server;
+        this.objectName = objectName;
+    }
+
+    /**
+     * Unregister this registry from the MBean server it was registered with, if any
+     * @throws JMException
+     */
+    public void unregisterMBean() throws JMException
+    {
+        if(this.mbeanServer != null && this.objectName != null)
+        {
+            this.mbeanServer.unregisterMBean(this.objectName);
+            this.mbeanServer = null;
+            this.objectName = null;
+        }
+    }
+
+    /**
+     * The stack of transaction scopes in flight on one thread. Only the owning thread
+     * pushes and pops; readers follow {@link #top} and the {@code outer} links
+     */
+    private static final class ThreadTransactions
+    {
+        final Thread thread;
+
+        @Nullable
+        volatile InFlightTransaction top;
+
+        ThreadTransactions(Thread thread)
+        {
+            this.thread = thread;
+        }
+
+        /**
+         * Pop the given top of the stack, along with any scopes underneath it that have
+         * already been completed out of order
+         * @param transaction
+         */
+        void pop(InFlightTransaction transaction)
+        {
+            InFlightTransaction outer = transaction.outer;
+            while(outer != null && outer.completed)
+            {
+                outer = outer.outer;
+            }
+            this.top = outer;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.garry.transaction.monitor;
+
+/**
+ * JMX management interface of an {@link InFlightTransactionRegistry}
+ */
+public interface InFlightTransactionsMBean {
+
+    /**
+     * Return the number of transaction scopes currently in flight
+     * @return
+     */
+    int getActiveTransactionCount();
+
+    /**
+     * Return the elapsed time of the longest running transaction scope, in milliseconds
+     * @return
+     */
+    long getLongestRunningMillis();
+
+    /**
+     * Return a description of each transaction scope in flight, longest running first
+     * @return
+     */
+    String[] getActiveTransactions();
+
+    /**
+     * Return descriptions of the transaction scopes running longer than the given time
+     * @param minMillis
+     * @return
+     */
+    String[] getTransactionsRunningLongerThan(long minMillis);
+}
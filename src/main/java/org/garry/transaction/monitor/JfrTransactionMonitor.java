@@ -0,0 +1,106 @@
+package org.garry.transaction.monitor;
+
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionOutcome;
+import org.springframework.core.Constants;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link TransactionMonitor} emitting JDK Flight Recorder events: one
+ * {@code org.garry.transaction.Transaction} event per transaction scope, and
+ * {@code org.garry.transaction.TransactionSuspension} events for suspend and resume.
+ *
+ * When the events are not enabled in a running recording, each callback costs a
+ * single enabled check: no state is attached to the transaction status.
+ */
+public class JfrTransactionMonitor implements TransactionMonitor {
+
+    private static final Constants constants = new Constants(TransactionDefinition.class);
+
+    @Override
+    public void afterBegin(DefaultTransactionStatus status, long beginNanos)
+    {
+        TransactionEvent event = new TransactionEvent();
+        if(!event.isEnabled())
+        {
+            return;
+        }
+        event.begin();
+        TransactionDefinition definition = status.getDefinition();
+        if(definition != null)
+        {
+            event.name = definition.getName();
+            event.propagation = constants.toCode(definition.getPropagationBehavior(), "PROPAGATION_");
+            event.isolation = constants.toCode(definition.getIsolationLevel(), "ISOLATION_");
+        }
+        event.transactionId = status.getTransactionId();
+        event.readOnly = status.isReadOnly();
+        event.newTransaction = status.isNewTransaction();
+        event.savepoint = status.hasSavepoint();
+        event.beginDuration = beginNanos;
+        status.setMonitorAttribute(this, event);
+    }
+
+    @Override
+    public void afterSuspend(@Nullable String transactionName, long suspendNanos)
+    {
+        commitSuspensionEvent(transactionName, "suspend", suspendNanos);
+    }
+
+    @Override
+    public void afterResume(@Nullable String transactionName, long resumeNanos)
+    {
+        commitSuspensionEvent(transactionName, "resume", resumeNanos);
+    }
+
+    private void commitSuspensionEvent(@Nullable String transactionName, String operation, long durationNanos)
+    {
+        TransactionSuspensionEvent event = new TransactionSuspensionEvent();
+        if(event.shouldCommit())
+        {
+            event.transactionName = transactionName;
+            event.operation = operation;
+            event.operationDuration = durationNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void afterCommit(DefaultTransactionStatus status, long commitNanos)
+    {
+        TransactionEvent event = (TransactionEvent) status.getMonitorAttribute(this);
+        if(event != null)
+        {
+            event.commitDuration = commitNanos;
+        }
+    }
+
+    @Override
+    public void afterRollback(DefaultTransactionStatus status, long rollbackNanos)
+    {
+        TransactionEvent event = (TransactionEvent) status.getMonitorAttribute(this);
+        if(event != null)
+        {
+            event.rollbackDuration = rollbackNanos;
+        }
+    }
+
+    @Override
+    public void afterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome, long durationNanos)
+    {
+        TransactionEvent event = (TransactionEvent) status.getMonitorAttribute(this);
+        if(event == null)
+        {
+            return;
+        }
+        status.setMonitorAttribute(this, null);
+        event.end();
+        if(event.shouldCommit())
+        {
+            event.outcome = outcome.name();
+            event.commit();
+        }
+    }
+}
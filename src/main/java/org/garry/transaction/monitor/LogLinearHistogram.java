@@ -0,0 +1,128 @@
+package org.garry.transaction.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values (typically nanoseconds) with
+ * log-linear buckets: each power of two is split into 8 linear sub-buckets, which
+ * bounds the relative error of reported values to 12.5% across the whole long range.
+ *
+ * Memory is fixed at {@value #BUCKET_COUNT} counters, and {@link #record} neither
+ * allocates nor blocks, so it may be called on hot paths from any number of threads.
+ * Snapshots are not atomic across buckets, which is fine for monitoring purposes
+ */
+public class LogLinearHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Number of buckets covering all non-negative long values
+     */
+    public static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value; negative values are recorded as 0
+     * @param value
+     */
+    public void record(long value)
+    {
+        if(value < 0)
+        {
+            value = 0;
+        }
+        this.counts.incrementAndGet(bucketIndex(value));
+        this.sum.addAndGet(value);
+        long currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value))
+        {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Take a snapshot of the recorded values
+     * @return
+     */
+    public HistogramSnapshot snapshot()
+    {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            bucketCounts[i] = this.counts.get(i);
+            count += bucketCounts[i];
+        }
+        return new HistogramSnapshot(bucketCounts, count, this.sum.get(), this.max.get());
+    }
+
+    /**
+     * Return the live count of the given bucket, for allocation-free exporting
+     * @param index
+     * @return
+     */
+    long bucketCount(int index)
+    {
+        return this.counts.get(index);
+    }
+
+    /**
+     * Return the live sum of all recorded values
+     * @return
+     */
+    long sum()
+    {
+        return this.sum.get();
+    }
+
+    /**
+     * Reset all recorded values
+     */
+    public void reset()
+    {
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            this.counts.set(i, 0);
+        }
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    static int bucketIndex(long value)
+    {
+        if(value < SUB_BUCKET_COUNT)
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Return the largest value falling into the given bucket
+     * @param index
+     * @return
+     */
+    static long bucketUpperBound(int index)
+    {
+        if(index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long upper = ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+        // The topmost bucket ends at Long.MAX_VALUE
+        return (upper < 0 ? Long.MAX_VALUE : upper);
+    }
+}
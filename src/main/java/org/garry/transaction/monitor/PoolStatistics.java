@@ -0,0 +1,41 @@
+package org.garry.transaction.monitor;
+
+/**
+ * Statistics of a resource pool used within transactions (typically a JDBC connection
+ * pool), as exported by {@link PrometheusMetricsExporter}.
+ *
+ * Usually implemented by a small adapter around the pool's own statistics.
+ * Implementations are read on every scrape, so they should be cheap and must not allocate
+ */
+public interface PoolStatistics {
+
+    /**
+     * Return the name of the pool, used as {@code pool} label
+     * @return
+     */
+    String getPoolName();
+
+    /**
+     * Return the number of resources currently in use
+     * @return
+     */
+    int getActiveCount();
+
+    /**
+     * Return the maximum number of resources of the pool
+     * @return
+     */
+    int getMaxSize();
+
+    /**
+     * Return the number of acquisitions so far
+     * @return
+     */
+    long getAcquireCount();
+
+    /**
+     * Return the total time spent waiting for a resource in all acquisitions so far, in nanoseconds
+     * @return
+     */
+    long getWaitTimeNanos();
+}
@@ -0,0 +1,516 @@
+package org.garry.transaction.monitor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporter of {@link TransactionMetrics}, {@link InFlightTransactionRegistry} and
+ * {@link PoolStatistics} in the Prometheus text exposition format, through an embedded
+ * HTTP endpoint ({@link #setHttpPort}) and/or a file periodically written for the node
+ * exporter's textfile collector ({@link #setTextFile}).
+ *
+ * Exported metric families:
+ * <ul>
+ *     <li>{@code transactions_total{name,outcome}}: completed physical transactions</li>
+ *     <li>{@code transactions_active}: transactions in flight, if a registry is set</li>
+ *     <li>{@code transaction_duration_seconds{name}}: histogram of begin-to-completion durations</li>
+ *     <li>{@code transaction_pool_wait_seconds{pool}}: summary of the time spent waiting for a pooled resource</li>
+ *     <li>{@code transaction_pool_utilization{pool}}: ratio of resources in use to the pool's maximum size</li>
+ * </ul>
+ *
+ * Rendering reads the live metrics rather than taking snapshots and writes into buffers
+ * reused across scrapes, so apart from map iterators a scrape only allocates to grow these buffers.
+ * Duration buckets are derived from the {@link LogLinearHistogram} buckets: a value is counted
+ * in the smallest bucket boundary its histogram bucket lies entirely below of, so counts may lag
+ * by up to the histogram's 12.5% resolution.
+ *
+ * Exporting starts with {@link #afterPropertiesSet()} and stops with {@link #destroy()}
+ */
+public class PrometheusMetricsExporter implements InitializingBean, DisposableBean {
+
+    /**
+     * Content type of the text exposition format
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String[] OUTCOME_LABELS = {
+            "committed", "rolled_back", "unexpected_rollback", "timed_out", "failed"};
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    @Nullable
+    private TransactionMetrics transactionMetrics;
+
+    @Nullable
+    private InFlightTransactionRegistry inFlightTransactionRegistry;
+
+    private PoolStatistics[] poolStatistics = new PoolStatistics[0];
+
+    private String[] bucketLabels = new String[0];
+
+    private int[] bucketLastIndexes = new int[0];
+
+    private int httpPort = -1;
+
+    private String httpPath = "/metrics";
+
+    @Nullable
+    private Path textFile;
+
+    private long textFileIntervalMillis = 15000;
+
+    private final StringBuilder text = new StringBuilder(8192);
+
+    private byte[] bytes = new byte[8192];
+
+    @Nullable
+    private HttpServer httpServer;
+
+    @Nullable
+    private ScheduledExecutorService textFileWriter;
+
+    public PrometheusMetricsExporter()
+    {
+        setDurationBucketsSeconds(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10);
+    }
+
+    /**
+     * Set the transaction metrics to export
+     * @param transactionMetrics
+     */
+    public void setTransactionMetrics(TransactionMetrics transactionMetrics)
+    {
+        this.transactionMetrics = transactionMetrics;
+    }
+
+    /**
+     * Set the registry to export the number of active transactions from, if any
+     * @param inFlightTransactionRegistry
+     */
+    public void setInFlightTransactionRegistry(@Nullable InFlightTransactionRegistry inFlightTransactionRegistry)
+    {
+        this.inFlightTransactionRegistry = inFlightTransactionRegistry;
+    }
+
+    /**
+     * Set the pools to export wait time and utilization for
+     * @param poolStatistics
+     */
+    public void setPoolStatistics(PoolStatistics... poolStatistics)
+    {
+        this.poolStatistics = poolStatistics.clone();
+    }
+
+    /**
+     * Set the upper bounds of the {@code transaction_duration_seconds} buckets, in seconds.
+     * Default is 1ms to 10s in a 1-2.5-5 progression
+     * @param bucketsSeconds
+     */
+    public void setDurationBucketsSeconds(double... bucketsSeconds)
+    {
+        double[] sorted = bucketsSeconds.clone();
+        Arrays.sort(sorted);
+        String[] labels = new String[sorted.length];
+        int[] lastIndexes = new int[sorted.length];
+        for(int i = 0; i < sorted.length; i++)
+        {
+            Assert.isTrue(sorted[i] > 0, "Bucket bounds must be positive");
+            labels[i] = Double.toString(sorted[i]);
+            long boundNanos = (long) (sorted[i] * 1_000_000_000L);
+            int last = -1;
+            while (last + 1 < LogLinearHistogram.BUCKET_COUNT &&
+                    LogLinearHistogram.bucketUpperBound(last + 1) <= boundNanos)
+            {
+                last++;
+            }
+            lastIndexes[i] = last;
+        }
+        this.bucketLabels = labels;
+        this.bucketLastIndexes = lastIndexes;
+    }
+
+    /**
+     * Set the port of the embedded HTTP endpoint, 0 for any free port,
+     * or -1 for no endpoint. Default is -1
+     * @param httpPort
+     */
+    public void setHttpPort(int httpPort)
+    {
+        this.httpPort = httpPort;
+    }
+
+    /**
+     * Set the path of the embedded HTTP endpoint. Default is "/metrics"
+     * @param httpPath
+     */
+    public void setHttpPath(String httpPath)
+    {
+        this.httpPath = httpPath;
+    }
+
+    /**
+     * Set the file to write the metrics to periodically, e.g.
+     * {@code /var/lib/node_exporter/textfile/transactions.prom}. The file is replaced
+     * atomically, as expected by the textfile collector. Default is none
+     * @param textFile
+     */
+    public void setTextFile(@Nullable Path textFile)
+    {
+        this.textFile = textFile;
+    }
+
+    /**
+     * Set the interval between two writes of the text file. Default is 15000
+     * @param textFileIntervalMillis
+     */
+    public void setTextFileIntervalMillis(long textFileIntervalMillis)
+    {
+        this.textFileIntervalMillis = textFileIntervalMillis;
+    }
+
+    /**
+     * Return the actual port of the embedded HTTP endpoint, or -1 if not running
+     * @return
+     */
+    public int getHttpPort()
+    {
+        HttpServer server = this.httpServer;
+        return (server != null ? server.getAddress().getPort() : -1);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException
+    {
+        Assert.notNull(this.transactionMetrics, "Property 'transactionMetrics' is required");
+        if(this.httpPort >= 0 && this.httpServer == null)
+        {
+            HttpServer server = HttpServer.create(new InetSocketAddress(this.httpPort), 0);
+            server.createContext(this.httpPath, this::handleScrape);
+            server.start();
+            this.httpServer = server;
+        }
+        if(this.textFile != null && this.textFileWriter == null)
+        {
+            Assert.isTrue(this.textFileIntervalMillis > 0, "Text file interval must be positive");
+            this.textFileWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "PrometheusMetricsExporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.textFileWriter.scheduleWithFixedDelay(this::writeTextFileSafely,
+                    0, this.textFileIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if(this.httpServer != null)
+        {
+            this.httpServer.stop(0);
+            this.httpServer = null;
+        }
+        if(this.textFileWriter != null)
+        {
+            this.textFileWriter.shutdownNow();
+            this.textFileWriter = null;
+        }
+    }
+
+    /**
+     * Write the current metrics to the given stream
+     * @param out
+     * @throws IOException
+     */
+    public synchronized void writeTo(OutputStream out) throws IOException
+    {
+        int length = render();
+        out.write(this.bytes, 0, length);
+    }
+
+    /**
+     * Render the current metrics as text, e.g. for an existing web endpoint
+     * @return
+     */
+    public synchronized String renderText()
+    {
+        renderText(this.text);
+        return this.text.toString();
+    }
+
+    /**
+     * Write the metrics to the configured text file now: to a temporary file first,
+     * then moved in place
+     * @throws IOException
+     */
+    public void writeTextFile() throws IOException
+    {
+        Path file = this.textFile;
+        Assert.state(file != null, "No text file configured");
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            writeTo(out);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeTextFileSafely()
+    {
+        try {
+            writeTextFile();
+        }
+        catch (IOException | RuntimeException ex) {
+            logger.warn("Could not write transaction metrics to " + this.textFile, ex);
+        }
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException
+    {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            synchronized (this)
+            {
+                int length = render();
+                exchange.sendResponseHeaders(200, length);
+                exchange.getResponseBody().write(this.bytes, 0, length);
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Render the current metrics into the reused byte buffer
+     * @return the number of bytes rendered
+     */
+    private int render()
+    {
+        renderText(this.text);
+        return encodeUtf8(this.text);
+    }
+
+    private void renderText(StringBuilder out)
+    {
+        out.setLength(0);
+        TransactionMetrics metrics = this.transactionMetrics;
+        Assert.state(metrics != null, "No TransactionMetrics set");
+        Map<String,TransactionMetrics.NameMetrics> names = metrics.nameMetrics();
+
+        out.append("# HELP transactions_total Completed physical transactions.\n");
+        out.append("# TYPE transactions_total counter\n");
+        // Iterating keys rather than entries: ConcurrentHashMap creates an entry object per element
+        for(String name: names.keySet())
+        {
+            TransactionMetrics.NameMetrics nameMetrics = names.get(name);
+            if(nameMetrics != null)
+            {
+                appendOutcome(out, name, 0, nameMetrics.commits.sum());
+                appendOutcome(out, name, 1, nameMetrics.rollbacks.sum());
+                appendOutcome(out, name, 2, nameMetrics.unexpectedRollbacks.sum());
+                appendOutcome(out, name, 3, nameMetrics.timeouts.sum());
+                appendOutcome(out, name, 4, nameMetrics.failures.sum());
+            }
+        }
+
+        InFlightTransactionRegistry registry = this.inFlightTransactionRegistry;
+        if(registry != null)
+        {
+            out.append("# HELP transactions_active Transactions currently in flight.\n");
+            out.append("# TYPE transactions_active gauge\n");
+            out.append("transactions_active ").append(registry.getActiveTransactionCount()).append('\n');
+        }
+
+        out.append("# HELP transaction_duration_seconds Duration of physical transactions from begin to completion.\n");
+        out.append("# TYPE transaction_duration_seconds histogram\n");
+        for(String name: names.keySet())
+        {
+            TransactionMetrics.NameMetrics nameMetrics = names.get(name);
+            if(nameMetrics != null)
+            {
+                appendHistogram(out, name, nameMetrics.duration);
+            }
+        }
+
+        if(this.poolStatistics.length > 0)
+        {
+            out.append("# HELP transaction_pool_wait_seconds Time spent waiting for a pooled resource.\n");
+            out.append("# TYPE transaction_pool_wait_seconds summary\n");
+            for(PoolStatistics pool: this.poolStatistics)
+            {
+                out.append("transaction_pool_wait_seconds_sum{pool=\"");
+                appendLabelValue(out, pool.getPoolName());
+                out.append("\"} ");
+                appendDecimal(out, pool.getWaitTimeNanos(), 9);
+                out.append("\ntransaction_pool_wait_seconds_count{pool=\"");
+                appendLabelValue(out, pool.getPoolName());
+                out.append("\"} ").append(pool.getAcquireCount()).append('\n');
+            }
+            out.append("# HELP transaction_pool_utilization Ratio of pooled resources in use to the maximum pool size.\n");
+            out.append("# TYPE transaction_pool_utilization gauge\n");
+            for(PoolStatistics pool: this.poolStatistics)
+            {
+                int maxSize = pool.getMaxSize();
+                out.append("transaction_pool_utilization{pool=\"");
+                appendLabelValue(out, pool.getPoolName());
+                out.append("\"} ");
+                appendDecimal(out, (maxSize > 0 ? pool.getActiveCount() * 1_000_000L / maxSize : 0), 6);
+                out.append('\n');
+            }
+        }
+    }
+
+    private void appendOutcome(StringBuilder out, String name, int outcome, long count)
+    {
+        out.append("transactions_total{name=\"");
+        appendLabelValue(out, name);
+        out.append("\",outcome=\"").append(OUTCOME_LABELS[outcome]).append("\"} ").append(count).append('\n');
+    }
+
+    private void appendHistogram(StringBuilder out, String name, LogLinearHistogram histogram)
+    {
+        long cumulative = 0;
+        int index = 0;
+        for(int i = 0; i < this.bucketLabels.length; i++)
+        {
+            for(; index <= this.bucketLastIndexes[i]; index++)
+            {
+                cumulative += histogram.bucketCount(index);
+            }
+            appendBucket(out, name, this.bucketLabels[i], cumulative);
+        }
+        for(; index < LogLinearHistogram.BUCKET_COUNT; index++)
+        {
+            cumulative += histogram.bucketCount(index);
+        }
+        appendBucket(out, name, "+Inf", cumulative);
+        out.append("transaction_duration_seconds_sum{name=\"");
+        appendLabelValue(out, name);
+        out.append("\"} ");
+        appendDecimal(out, histogram.sum(), 9);
+        out.append("\ntransaction_duration_seconds_count{name=\"");
+        appendLabelValue(out, name);
+        out.append("\"} ").append(cumulative).append('\n');
+    }
+
+    private void appendBucket(StringBuilder out, String name, String le, long count)
+    {
+        out.append("transaction_duration_seconds_bucket{name=\"");
+        appendLabelValue(out, name);
+        out.append("\",le=\"").append(le).append("\"} ").append(count).append('\n');
+    }
+
+    private static void appendLabelValue(StringBuilder out, String value)
+    {
+        for(int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if(c == '\\' || c == '"')
+            {
+                out.append('\\').append(c);
+            }
+            else if(c == '\n')
+            {
+                out.append("\\n");
+            }
+            else
+            {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Append the given fixed-point value without going through floating point
+     * @param out
+     * @param value the value, scaled by 10^scale
+     * @param scale the number of fractional digits in the value
+     */
+    static void appendDecimal(StringBuilder out, long value, int scale)
+    {
+        if(value < 0)
+        {
+            out.append('-');
+            value = -value;
+        }
+        long divisor = 1;
+        for(int i = 0; i < scale; i++)
+        {
+            divisor *= 10;
+        }
+        out.append(value / divisor);
+        long fraction = value % divisor;
+        if(fraction != 0)
+        {
+            out.append('.');
+            for(long digit = divisor / 10; digit > 0 && fraction != 0; digit /= 10)
+            {
+                out.append((char) ('0' + fraction / digit));
+                fraction %= digit;
+            }
+        }
+    }
+
+    /**
+     * Encode the given text as UTF-8 into the reused byte buffer, growing it if needed
+     * @param text
+     * @return the number of bytes
+     */
+    private int encodeUtf8(CharSequence text)
+    {
+        int maxLength = text.length() * 3;
+        if(this.bytes.length < maxLength)
+        {
+            this.bytes = new byte[Math.max(maxLength, this.bytes.length * 2)];
+        }
+        byte[] buffer = this.bytes;
+        int position = 0;
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if(c < 0x80)
+            {
+                buffer[position++] = (byte) c;
+            }
+            else if(c < 0x800)
+            {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < text.length() &&
+                    Character.isLowSurrogate(text.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else
+            {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,275 @@
+package org.garry.transaction.monitor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionOutcome;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransactionMonitor} flagging physical transactions that stay open longer
+ * than a threshold, configurable per transaction name.
+ *
+ * A watchdog thread scans the open transactions periodically. Once a transaction
+ * has exceeded its threshold, the stack of its owning thread is sampled a few times
+ * while it is still running. At completion, a report with the elapsed time, the time
+ * spent in synchronization callbacks and the sampled stacks is logged at WARN level.
+ * The stacks typically show where a transaction waits, e.g. on remote calls while
+ * holding a connection.
+ *
+ * The watchdog is started by {@link #afterPropertiesSet()} and stopped by {@link #destroy()}
+ */
+public class SlowTransactionDetector implements TransactionMonitor, InitializingBean, DisposableBean {
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private long defaultThresholdMillis = 1000;
+
+    private Map<String,Long> thresholdsMillis = new HashMap<>();
+
+    private long scanIntervalMillis = 100;
+
+    private long sampleIntervalMillis = 200;
+
+    private int maxSamples = 3;
+
+    private int maxStackDepth = 32;
+
+    private final ConcurrentMap<DefaultTransactionStatus,OpenTransaction> openTransactions = new ConcurrentHashMap<>();
+
+    @Nullable
+    private ScheduledExecutorService watchdog;
+
+    /**
+     * Set the threshold for transactions without a specific threshold, in milliseconds.
+     * A negative value disables detection for those. Default is 1000
+     * @param defaultThresholdMillis
+     */
+    public void setDefaultThresholdMillis(long defaultThresholdMillis)
+    {
+        this.defaultThresholdMillis = defaultThresholdMillis;
+    }
+
+    /**
+     * Set thresholds per transaction name, in milliseconds. A negative value
+     * disables detection for that name
+     * @param thresholdsMillis
+     */
+    public void setThresholdsMillis(Map<String,Long> thresholdsMillis)
+    {
+        this.thresholdsMillis = new HashMap<>(thresholdsMillis);
+    }
+
+    /**
+     * Set the interval at which the watchdog scans open transactions. Default is 100
+     * @param scanIntervalMillis
+     */
+    public void setScanIntervalMillis(long scanIntervalMillis)
+    {
+        this.scanIntervalMillis = scanIntervalMillis;
+    }
+
+    /**
+     * Set the minimum interval between two stack samples of the same transaction. Default is 200
+     * @param sampleIntervalMillis
+     */
+    public void setSampleIntervalMillis(long sampleIntervalMillis)
+    {
+        this.sampleIntervalMillis = sampleIntervalMillis;
+    }
+
+    /**
+     * Set the maximum number of stack samples per transaction. Default is 3
+     * @param maxSamples
+     */
+    public void setMaxSamples(int maxSamples)
+    {
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Set the maximum number of frames to keep per stack sample. Default is 32
+     * @param maxStackDepth
+     */
+    public void setMaxStackDepth(int maxStackDepth)
+    {
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        Assert.isTrue(this.scanIntervalMillis > 0, "Scan interval must be positive");
+        if(this.watchdog == null)
+        {
+            this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "SlowTransactionDetector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.watchdog.scheduleWithFixedDelay(this::scan,
+                    this.scanIntervalMillis, this.scanIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if(this.watchdog != null)
+        {
+            this.watchdog.shutdownNow();
+            this.watchdog = null;
+        }
+        this.openTransactions.clear();
+    }
+
+    @Override
+    public void afterBegin(DefaultTransactionStatus status, long beginNanos)
+    {
+        if(!status.isNewTransaction())
+        {
+            return;
+        }
+        TransactionDefinition definition = status.getDefinition();
+        String name = (definition != null ? definition.getName() : null);
+        Long threshold = (name != null ? this.thresholdsMillis.get(name) : null);
+        long thresholdMillis = (threshold != null ? threshold : this.defaultThresholdMillis);
+        if(thresholdMillis >= 0)
+        {
+            this.openTransactions.put(status, new OpenTransaction(
+                    name, Thread.currentThread(), status.getStartNanos(), TimeUnit.MILLISECONDS.toNanos(thresholdMillis)));
+        }
+    }
+
+    @Override
+    public void afterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome, long durationNanos)
+    {
+        OpenTransaction transaction = this.openTransactions.remove(status);
+        if(transaction != null && durationNanos >= transaction.thresholdNanos && logger.isWarnEnabled())
+        {
+            logger.warn(buildReport(transaction, outcome, durationNanos, status.getSynchronizationNanos()));
+        }
+    }
+
+    /**
+     * Sample the stacks of all open transactions beyond their threshold
+     */
+    void scan()
+    {
+        long now = System.nanoTime();
+        long sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(this.sampleIntervalMillis);
+        for(OpenTransaction transaction: this.openTransactions.values())
+        {
+            if(now - transaction.startNanos < transaction.thresholdNanos)
+            {
+                continue;
+            }
+            synchronized (transaction)
+            {
+                if(transaction.samples.size() < this.maxSamples &&
+                        (transaction.samples.isEmpty() || now - transaction.lastSampleNanos >= sampleIntervalNanos))
+                {
+                    StackTraceElement[] stack = transaction.thread.getStackTrace();
+                    if(stack.length > this.maxStackDepth)
+                    {
+                        StackTraceElement[] truncated = new StackTraceElement[this.maxStackDepth];
+                        System.arraycopy(stack, 0, truncated, 0, this.maxStackDepth);
+                        stack = truncated;
+                    }
+                    transaction.samples.add(new StackSample(now - transaction.startNanos, stack));
+                    transaction.lastSampleNanos = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the report logged for a slow transaction
+     * @param transaction
+     * @param outcome
+     * @param durationNanos
+     * @param synchronizationNanos
+     * @return
+     */
+    protected String buildReport(OpenTransaction transaction, TransactionOutcome outcome,
+                                 long durationNanos, long synchronizationNanos)
+    {
+        List<StackSample> samples;
+        synchronized (transaction)
+        {
+            samples = new ArrayList<>(transaction.samples);
+        }
+        StringBuilder report = new StringBuilder(256);
+        report.append("Slow transaction [").append(transaction.name).append("]")
+                .append(" outcome=").append(outcome)
+                .append(" elapsedMs=").append(TimeUnit.NANOSECONDS.toMillis(durationNanos))
+                .append(" thresholdMs=").append(TimeUnit.NANOSECONDS.toMillis(transaction.thresholdNanos))
+                .append(" synchronizationMs=").append(TimeUnit.NANOSECONDS.toMillis(synchronizationNanos))
+                .append(" thread=").append(transaction.thread.getName())
+                .append(" samples=").append(samples.size());
+        for(StackSample sample: samples)
+        {
+            report.append("\n  sample at ").append(TimeUnit.NANOSECONDS.toMillis(sample.offsetNanos)).append(" ms:");
+            for(StackTraceElement element: sample.stack)
+            {
+                report.append("\n    at ").append(element);
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * A physical transaction being watched
+     */
+    protected static final class OpenTransaction
+    {
+        @Nullable
+        final String name;
+
+        final Thread thread;
+
+        final long startNanos;
+
+        final long thresholdNanos;
+
+        final List<StackSample> samples = new ArrayList<>(2);
+
+        long lastSampleNanos;
+
+        OpenTransaction(@Nullable String name, Thread thread, long startNanos, long thresholdNanos)
+        {
+            this.name = name;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.thresholdNanos = thresholdNanos;
+        }
+    }
+
+    private static final class StackSample
+    {
+        final long offsetNanos;
+
+        final StackTraceElement[] stack;
+
+        StackSample(long offsetNanos, StackTraceElement[] stack)
+        {
+            this.offsetNanos = offsetNanos;
+            this.stack = stack;
+        }
+    }
+}
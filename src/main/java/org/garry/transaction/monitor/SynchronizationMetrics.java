@@ -0,0 +1,230 @@
+package org.garry.transaction.monitor;
+
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.SynchronizationPhase;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionSynchronization;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link TransactionMonitor} attributing synchronization time to the registered
+ * {@link TransactionSynchronization} classes: one histogram per synchronization class
+ * and {@link SynchronizationPhase}, plus the slowest callbacks seen per transaction name.
+ *
+ * Requires {@link org.garry.transaction.support.AbstractPlatformTransactionManager#setSynchronizationTiming
+ * synchronization timing} to be enabled on the transaction manager. Histograms are created
+ * on the first callback of a class and phase; afterwards, recording does not allocate unless
+ * a callback makes it into the slowest callbacks of its transaction name.
+ *
+ * Usage: {@code transactionManager.addTransactionMonitor(synchronizationMetrics)}, then poll
+ * {@link #snapshot()}
+ */
+public class SynchronizationMetrics implements TransactionMonitor {
+
+    private static final SynchronizationPhase[] PHASES = SynchronizationPhase.values();
+
+    private final ConcurrentMap<Class<?>,AtomicReferenceArray<LogLinearHistogram>> classMetrics =
+            new ConcurrentHashMap<>(64);
+
+    private final ConcurrentMap<String,SlowestCallbacks> slowestCallbacks = new ConcurrentHashMap<>(64);
+
+    private volatile int maxTransactionNames = 1000;
+
+    private volatile int slowestCallbacksPerName = 5;
+
+    /**
+     * Set the maximum number of distinct transaction names to keep the slowest callbacks for.
+     * Further names are recorded under {@link TransactionMetrics#OTHER_NAME}. Default is 1000
+     * @param maxTransactionNames
+     */
+    public void setMaxTransactionNames(int maxTransactionNames)
+    {
+        this.maxTransactionNames = maxTransactionNames;
+    }
+
+    /**
+     * Set the number of slowest callbacks to keep per transaction name. Default is 5
+     * @param slowestCallbacksPerName
+     */
+    public void setSlowestCallbacksPerName(int slowestCallbacksPerName)
+    {
+        Assert.isTrue(slowestCallbacksPerName > 0, "slowestCallbacksPerName must be positive");
+        this.slowestCallbacksPerName = slowestCallbacksPerName;
+    }
+
+    @Override
+    public void afterSynchronizationCallback(DefaultTransactionStatus status, SynchronizationPhase phase,
+                                             TransactionSynchronization synchronization, long callbackNanos)
+    {
+        Class<?> synchronizationClass = synchronization.getClass();
+        histogramFor(synchronizationClass, phase).record(callbackNanos);
+        SlowestCallbacks slowest = slowestCallbacksFor(status);
+        if(callbackNanos > slowest.threshold)
+        {
+            slowest.offer(new CallbackTiming(synchronizationClass.getName(), phase, callbackNanos),
+                    this.slowestCallbacksPerName);
+        }
+    }
+
+    private LogLinearHistogram histogramFor(Class<?> synchronizationClass, SynchronizationPhase phase)
+    {
+        AtomicReferenceArray<LogLinearHistogram> histograms = this.classMetrics.get(synchronizationClass);
+        if(histograms == null)
+        {
+            histograms = this.classMetrics.computeIfAbsent(synchronizationClass,
+                    key -> new AtomicReferenceArray<>(PHASES.length));
+        }
+        LogLinearHistogram histogram = histograms.get(phase.ordinal());
+        if(histogram == null)
+        {
+            histograms.compareAndSet(phase.ordinal(), null, new LogLinearHistogram());
+            histogram = histograms.get(phase.ordinal());
+        }
+        return histogram;
+    }
+
+    private SlowestCallbacks slowestCallbacksFor(DefaultTransactionStatus status)
+    {
+        TransactionDefinition definition = status.getDefinition();
+        String name = (definition != null ? definition.getName() : null);
+        if(name == null)
+        {
+            name = TransactionMetrics.UNNAMED;
+        }
+        SlowestCallbacks slowest = this.slowestCallbacks.get(name);
+        if(slowest == null)
+        {
+            if(this.slowestCallbacks.size() >= this.maxTransactionNames)
+            {
+                name = TransactionMetrics.OTHER_NAME;
+            }
+            slowest = this.slowestCallbacks.computeIfAbsent(name, key -> new SlowestCallbacks());
+        }
+        return slowest;
+    }
+
+    /**
+     * Take a snapshot of all synchronization timings collected so far
+     * @return
+     */
+    public SynchronizationMetricsSnapshot snapshot()
+    {
+        Map<String,Map<SynchronizationPhase,HistogramSnapshot>> classes = new LinkedHashMap<>();
+        for(Map.Entry<Class<?>,AtomicReferenceArray<LogLinearHistogram>> entry: this.classMetrics.entrySet())
+        {
+            Map<SynchronizationPhase,HistogramSnapshot> phases = new EnumMap<>(SynchronizationPhase.class);
+            AtomicReferenceArray<LogLinearHistogram> histograms = entry.getValue();
+            for(SynchronizationPhase phase: PHASES)
+            {
+                LogLinearHistogram histogram = histograms.get(phase.ordinal());
+                if(histogram != null)
+                {
+                    phases.put(phase, histogram.snapshot());
+                }
+            }
+            classes.put(entry.getKey().getName(), phases);
+        }
+        Map<String,List<CallbackTiming>> slowest = new LinkedHashMap<>();
+        for(Map.Entry<String,SlowestCallbacks> entry: this.slowestCallbacks.entrySet())
+        {
+            slowest.put(entry.getKey(), entry.getValue().toList());
+        }
+        return new SynchronizationMetricsSnapshot(classes, slowest);
+    }
+
+    /**
+     * Reset all timings, forgetting all classes and transaction names
+     */
+    public void reset()
+    {
+        this.classMetrics.clear();
+        this.slowestCallbacks.clear();
+    }
+
+    /**
+     * Bounded set of the slowest callbacks of a transaction name
+     */
+    private static final class SlowestCallbacks
+    {
+        private static final Comparator<CallbackTiming> SLOWEST_FIRST =
+                Comparator.comparingLong(CallbackTiming::getNanos).reversed();
+
+        private CallbackTiming[] timings = new CallbackTiming[0];
+
+        /**
+         * Duration a callback must exceed to enter the set, once full
+         */
+        volatile long threshold = -1;
+
+        synchronized void offer(CallbackTiming timing, int capacity)
+        {
+            if(this.timings.length < capacity)
+            {
+                this.timings = Arrays.copyOf(this.timings, this.timings.length + 1);
+            }
+            else if(timing.getNanos() <= this.timings[this.timings.length - 1].getNanos())
+            {
+                return;
+            }
+            this.timings[this.timings.length - 1] = timing;
+            Arrays.sort(this.timings, SLOWEST_FIRST);
+            if(this.timings.length >= capacity)
+            {
+                this.threshold = this.timings[this.timings.length - 1].getNanos();
+            }
+        }
+
+        synchronized List<CallbackTiming> toList()
+        {
+            return new ArrayList<>(Arrays.asList(this.timings));
+        }
+    }
+
+    /**
+     * A single timed synchronization callback
+     */
+    public static final class CallbackTiming
+    {
+        private final String synchronizationClass;
+
+        private final SynchronizationPhase phase;
+
+        private final long nanos;
+
+        CallbackTiming(String synchronizationClass, SynchronizationPhase phase, long nanos)
+        {
+            this.synchronizationClass = synchronizationClass;
+            this.phase = phase;
+            this.nanos = nanos;
+        }
+
+        public String getSynchronizationClass() {
+            return this.synchronizationClass;
+        }
+
+        public SynchronizationPhase getPhase() {
+            return this.phase;
+        }
+
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        @Override
+        public String toString() {
+            return this.synchronizationClass + "." + this.phase + "=" + this.nanos + "ns";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.garry.transaction.monitor;
+
+import org.garry.transaction.support.SynchronizationPhase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time view of {@link SynchronizationMetrics}.
+ * All durations are in nanoseconds
+ */
+public final class SynchronizationMetricsSnapshot {
+
+    private final Map<String,Map<SynchronizationPhase,HistogramSnapshot>> synchronizationClasses;
+
+    private final Map<String,List<SynchronizationMetrics.CallbackTiming>> slowestCallbacks;
+
+    SynchronizationMetricsSnapshot(Map<String,Map<SynchronizationPhase,HistogramSnapshot>> synchronizationClasses,
+                                   Map<String,List<SynchronizationMetrics.CallbackTiming>> slowestCallbacks)
+    {
+        this.synchronizationClasses = Collections.unmodifiableMap(synchronizationClasses);
+        this.slowestCallbacks = Collections.unmodifiableMap(slowestCallbacks);
+    }
+
+    /**
+     * Return the callback durations per synchronization class name and phase.
+     * Only phases with at least one callback are present
+     * @return
+     */
+    public Map<String,Map<SynchronizationPhase,HistogramSnapshot>> getSynchronizationClasses() {
+        return this.synchronizationClasses;
+    }
+
+    /**
+     * Return the slowest callbacks per transaction name, slowest first
+     * @return
+     */
+    public Map<String,List<SynchronizationMetrics.CallbackTiming>> getSlowestCallbacks() {
+        return this.slowestCallbacks;
+    }
+
+    @Override
+    public String toString() {
+        return "synchronizationClasses=" + this.synchronizationClasses + ", slowestCallbacks=" + this.slowestCallbacks;
+    }
+}
@@ -0,0 +1,61 @@
+package org.garry.transaction.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event spanning a transaction scope, from the return of
+ * {@code getTransaction} to its completion
+ */
+@Name("org.garry.transaction.Transaction")
+@Label("Transaction")
+@Category({"Spring", "Transaction"})
+@Description("Transaction scope managed by a PlatformTransactionManager")
+@StackTrace(false)
+class TransactionEvent extends Event {
+
+    @Label("Name")
+    String name;
+
+    @Label("Transaction Id")
+    @Description("Id of the transaction, shared by participating scopes")
+    long transactionId;
+
+    @Label("Propagation")
+    String propagation;
+
+    @Label("Isolation")
+    String isolation;
+
+    @Label("Read-only")
+    boolean readOnly;
+
+    @Label("New Transaction")
+    @Description("Whether this scope started a physical transaction rather than participating in one")
+    boolean newTransaction;
+
+    @Label("Savepoint")
+    @Description("Whether this scope is a nested transaction backed by a savepoint")
+    boolean savepoint;
+
+    @Label("Begin Duration")
+    @Description("Time spent in getTransaction, including suspension of an outer transaction")
+    @Timespan(Timespan.NANOSECONDS)
+    long beginDuration;
+
+    @Label("Commit Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long commitDuration;
+
+    @Label("Rollback Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long rollbackDuration;
+
+    @Label("Outcome")
+    String outcome;
+}
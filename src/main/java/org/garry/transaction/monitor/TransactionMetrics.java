@@ -0,0 +1,241 @@
+package org.garry.transaction.monitor;
+
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionOutcome;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TransactionMonitor} collecting metrics of physical transactions:
+ * counters per outcome, plus begin-to-completion duration and commit latency
+ * histograms per transaction name ({@link TransactionDefinition#getName()}).
+ *
+ * Participating, nested (savepoint) and empty transaction scopes are not recorded,
+ * their work is accounted for by the enclosing physical transaction.
+ * Recording for a known name does not allocate. The number of distinct names is capped
+ * (see {@link #setMaxTransactionNames}), further names are recorded under {@link #OTHER_NAME}.
+ *
+ * With {@link org.garry.transaction.support.AbstractPlatformTransactionManager#setResourceAccounting
+ * resource accounting} enabled on the transaction manager, the CPU time and heap bytes
+ * allocated per transaction are aggregated per name as well.
+ *
+ * Usage: {@code transactionManager.addTransactionMonitor(metrics)}, then poll {@link #snapshot()}
+ */
+public class TransactionMetrics implements TransactionMonitor {
+
+    /**
+     * Name used for transactions without a name
+     */
+    public static final String UNNAMED = "<unnamed>";
+
+    /**
+     * Name used for transactions beyond the maximum number of names
+     */
+    public static final String OTHER_NAME = "<other>";
+
+    private final ConcurrentMap<String,NameMetrics> nameMetrics = new ConcurrentHashMap<>(64);
+
+    private volatile int maxTransactionNames = 1000;
+
+    private final LongAdder commits = new LongAdder();
+
+    private final LongAdder rollbacks = new LongAdder();
+
+    private final LongAdder unexpectedRollbacks = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder suspensions = new LongAdder();
+
+    private final LongAdder resumptions = new LongAdder();
+
+    private final LogLinearHistogram beginLatency = new LogLinearHistogram();
+
+    private final LogLinearHistogram suspendLatency = new LogLinearHistogram();
+
+    private final LogLinearHistogram resumeLatency = new LogLinearHistogram();
+
+    /**
+     * Set the maximum number of distinct transaction names to keep histograms for.
+     * Each name takes about 16 KB. Default is 1000
+     * @param maxTransactionNames
+     */
+    public void setMaxTransactionNames(int maxTransactionNames)
+    {
+        this.maxTransactionNames = maxTransactionNames;
+    }
+
+    @Override
+    public void afterBegin(DefaultTransactionStatus status, long beginNanos)
+    {
+        if(status.isNewTransaction())
+        {
+            this.beginLatency.record(beginNanos);
+        }
+    }
+
+    @Override
+    public void afterSuspend(@Nullable String transactionName, long suspendNanos)
+    {
+        this.suspensions.increment();
+        this.suspendLatency.record(suspendNanos);
+    }
+
+    @Override
+    public void afterResume(@Nullable String transactionName, long resumeNanos)
+    {
+        this.resumptions.increment();
+        this.resumeLatency.record(resumeNanos);
+    }
+
+    @Override
+    public void afterCommit(DefaultTransactionStatus status, long commitNanos)
+    {
+        if(status.isNewTransaction())
+        {
+            metricsFor(status).commitLatency.record(commitNanos);
+        }
+    }
+
+    @Override
+    public void afterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome, long durationNanos)
+    {
+        if(!status.isNewTransaction())
+        {
+            return;
+        }
+        NameMetrics metrics = metricsFor(status);
+        metrics.duration.record(durationNanos);
+        long cpuNanos = status.getCpuNanos();
+        if(cpuNanos >= 0)
+        {
+            metrics.cpuTime.record(cpuNanos);
+        }
+        long allocatedBytes = status.getAllocatedBytes();
+        if(allocatedBytes >= 0)
+        {
+            metrics.allocatedBytes.record(allocatedBytes);
+        }
+        switch (outcome)
+        {
+            case COMMITTED:
+                this.commits.increment();
+                metrics.commits.increment();
+                break;
+            case ROLLED_BACK:
+                this.rollbacks.increment();
+                metrics.rollbacks.increment();
+                break;
+            case UNEXPECTED_ROLLBACK:
+                this.unexpectedRollbacks.increment();
+                metrics.unexpectedRollbacks.increment();
+                break;
+            case TIMED_OUT:
+                this.timeouts.increment();
+                metrics.timeouts.increment();
+                break;
+            default:
+                this.failures.increment();
+                metrics.failures.increment();
+        }
+    }
+
+    private NameMetrics metricsFor(DefaultTransactionStatus status)
+    {
+        TransactionDefinition definition = status.getDefinition();
+        String name = (definition != null ? definition.getName() : null);
+        if(name == null)
+        {
+            name = UNNAMED;
+        }
+        NameMetrics metrics = this.nameMetrics.get(name);
+        if(metrics == null)
+        {
+            if(this.nameMetrics.size() >= this.maxTransactionNames)
+            {
+                name = OTHER_NAME;
+            }
+            metrics = this.nameMetrics.computeIfAbsent(name, key -> new NameMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Take a snapshot of all metrics collected so far
+     * @return
+     */
+    public TransactionMetricsSnapshot snapshot()
+    {
+        Map<String,TransactionMetricsSnapshot.NameSnapshot> names = new LinkedHashMap<>();
+        for(Map.Entry<String,NameMetrics> entry: this.nameMetrics.entrySet())
+        {
+            NameMetrics metrics = entry.getValue();
+            names.put(entry.getKey(), new TransactionMetricsSnapshot.NameSnapshot(entry.getKey(),
+                    metrics.commits.sum(), metrics.rollbacks.sum(), metrics.unexpectedRollbacks.sum(),
+                    metrics.timeouts.sum(), metrics.failures.sum(),
+                    metrics.duration.snapshot(), metrics.commitLatency.snapshot(),
+                    metrics.cpuTime.snapshot(), metrics.allocatedBytes.snapshot()));
+        }
+        return new TransactionMetricsSnapshot(this.commits.sum(), this.rollbacks.sum(),
+                this.unexpectedRollbacks.sum(), this.timeouts.sum(), this.failures.sum(),
+                this.suspensions.sum(), this.resumptions.sum(), this.beginLatency.snapshot(),
+                this.suspendLatency.snapshot(), this.resumeLatency.snapshot(), names);
+    }
+
+    /**
+     * Return the live metrics per transaction name, for allocation-free exporting
+     * @return
+     */
+    Map<String,NameMetrics> nameMetrics()
+    {
+        return this.nameMetrics;
+    }
+
+    /**
+     * Reset all metrics, forgetting all transaction names
+     */
+    public void reset()
+    {
+        this.nameMetrics.clear();
+        this.commits.reset();
+        this.rollbacks.reset();
+        this.unexpectedRollbacks.reset();
+        this.timeouts.reset();
+        this.failures.reset();
+        this.suspensions.reset();
+        this.resumptions.reset();
+        this.beginLatency.reset();
+        this.suspendLatency.reset();
+        this.resumeLatency.reset();
+    }
+
+    static final class NameMetrics
+    {
+        final LongAdder commits = new LongAdder();
+
+        final LongAdder rollbacks = new LongAdder();
+
+        final LongAdder unexpectedRollbacks = new LongAdder();
+
+        final LongAdder timeouts = new LongAdder();
+
+        final LongAdder failures = new LongAdder();
+
+        final LogLinearHistogram duration = new LogLinearHistogram();
+
+        final LogLinearHistogram commitLatency = new LogLinearHistogram();
+
+        final LogLinearHistogram cpuTime = new LogLinearHistogram();
+
+        final LogLinearHistogram allocatedBytes = new LogLinearHistogram();
+    }
+}
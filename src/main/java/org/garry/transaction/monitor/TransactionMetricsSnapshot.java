@@ -0,0 +1,211 @@
+package org.garry.transaction.monitor;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time view of {@link TransactionMetrics}.
+ * All durations are in nanoseconds
+ */
+public final class TransactionMetricsSnapshot {
+
+    private final long commits;
+
+    private final long rollbacks;
+
+    private final long unexpectedRollbacks;
+
+    private final long timeouts;
+
+    private final long failures;
+
+    private final long suspensions;
+
+    private final long resumptions;
+
+    private final HistogramSnapshot beginLatency;
+
+    private final HistogramSnapshot suspendLatency;
+
+    private final HistogramSnapshot resumeLatency;
+
+    private final Map<String,NameSnapshot> transactionNames;
+
+    TransactionMetricsSnapshot(long commits, long rollbacks, long unexpectedRollbacks, long timeouts,
+                               long failures, long suspensions, long resumptions,
+                               HistogramSnapshot beginLatency, HistogramSnapshot suspendLatency,
+                               HistogramSnapshot resumeLatency, Map<String,NameSnapshot> transactionNames)
+    {
+        this.commits = commits;
+        this.rollbacks = rollbacks;
+        this.unexpectedRollbacks = unexpectedRollbacks;
+        this.timeouts = timeouts;
+        this.failures = failures;
+        this.suspensions = suspensions;
+        this.resumptions = resumptions;
+        this.beginLatency = beginLatency;
+        this.suspendLatency = suspendLatency;
+        this.resumeLatency = resumeLatency;
+        this.transactionNames = Collections.unmodifiableMap(transactionNames);
+    }
+
+    public long getCommits() {
+        return this.commits;
+    }
+
+    public long getRollbacks() {
+        return this.rollbacks;
+    }
+
+    public long getUnexpectedRollbacks() {
+        return this.unexpectedRollbacks;
+    }
+
+    public long getTimeouts() {
+        return this.timeouts;
+    }
+
+    public long getFailures() {
+        return this.failures;
+    }
+
+    public long getSuspensions() {
+        return this.suspensions;
+    }
+
+    public long getResumptions() {
+        return this.resumptions;
+    }
+
+    /**
+     * Return the latency of {@code getTransaction} for new transactions
+     * @return
+     */
+    public HistogramSnapshot getBeginLatency() {
+        return this.beginLatency;
+    }
+
+    public HistogramSnapshot getSuspendLatency() {
+        return this.suspendLatency;
+    }
+
+    public HistogramSnapshot getResumeLatency() {
+        return this.resumeLatency;
+    }
+
+    /**
+     * Return the metrics per transaction name
+     * @return
+     */
+    public Map<String,NameSnapshot> getTransactionNames() {
+        return this.transactionNames;
+    }
+
+    /**
+     * Metrics of all transactions with a given name
+     */
+    public static final class NameSnapshot
+    {
+        private final String name;
+
+        private final long commits;
+
+        private final long rollbacks;
+
+        private final long unexpectedRollbacks;
+
+        private final long timeouts;
+
+        private final long failures;
+
+        private final HistogramSnapshot duration;
+
+        private final HistogramSnapshot commitLatency;
+
+        private final HistogramSnapshot cpuTime;
+
+        private final HistogramSnapshot allocatedBytes;
+
+        NameSnapshot(String name, long commits, long rollbacks, long unexpectedRollbacks, long timeouts,
+                     long failures, HistogramSnapshot duration, HistogramSnapshot commitLatency,
+                     HistogramSnapshot cpuTime, HistogramSnapshot allocatedBytes)
+        {
+            this.name = name;
+            this.commits = commits;
+            this.rollbacks = rollbacks;
+            this.unexpectedRollbacks = unexpectedRollbacks;
+            this.timeouts = timeouts;
+            this.failures = failures;
+            this.duration = duration;
+            this.commitLatency = commitLatency;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getCommits() {
+            return this.commits;
+        }
+
+        public long getRollbacks() {
+            return this.rollbacks;
+        }
+
+        public long getUnexpectedRollbacks() {
+            return this.unexpectedRollbacks;
+        }
+
+        public long getTimeouts() {
+            return this.timeouts;
+        }
+
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Return the begin-to-completion duration
+         * @return
+         */
+        public HistogramSnapshot getDuration() {
+            return this.duration;
+        }
+
+        /**
+         * Return the latency of the physical commit
+         * @return
+         */
+        public HistogramSnapshot getCommitLatency() {
+            return this.commitLatency;
+        }
+
+        /**
+         * Return the CPU time of the owning thread per transaction.
+         * Empty unless resource accounting is enabled on the transaction manager
+         * @return
+         */
+        public HistogramSnapshot getCpuTime() {
+            return this.cpuTime;
+        }
+
+        /**
+         * Return the heap bytes allocated by the owning thread per transaction,
+         * the sum being the total allocated by transactions of this name.
+         * Empty unless resource accounting is enabled on the transaction manager
+         * @return
+         */
+        public HistogramSnapshot getAllocatedBytes() {
+            return this.allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return this.name + ": commits=" + this.commits + ", rollbacks=" + this.rollbacks +
+                    ", duration[" + this.duration + "]" +
+                    (this.allocatedBytes.getCount() > 0 ? ", allocatedBytes[" + this.allocatedBytes + "]" : "");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.garry.transaction.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for the suspension or resumption of a transaction.
+ * Emitted once the operation has finished, carrying its duration as a field
+ */
+@Name("org.garry.transaction.TransactionSuspension")
+@Label("Transaction Suspend/Resume")
+@Category({"Spring", "Transaction"})
+@Description("Suspension or resumption of an outer transaction")
+@StackTrace(false)
+class TransactionSuspensionEvent extends Event {
+
+    @Label("Transaction Name")
+    String transactionName;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Operation Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long operationDuration;
+}
@@ -5,10 +5,13 @@ import org.apache.commons.logging.LogFactory;
 import org.garry.transaction.*;
 import org.springframework.core.Constants;
 import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -59,6 +62,14 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
      */
     private static final Constants constants = new Constants(AbstractPlatformTransactionManager.class);
 
+    /**
+     * Default MDC key for the current transaction id
+     */
+    public static final String DEFAULT_TRANSACTION_ID_MDC_KEY = "transactionId";
+
+    private static final boolean slf4jMdcAvailable = ClassUtils.isPresent(
+            "org.slf4j.MDC", AbstractPlatformTransactionManager.class.getClassLoader());
+
     protected transient Log logger = LogFactory.getLog(getClass());
 
     private int transactionSynchronization = SYNCHRONIZATION_ALWAYS;
@@ -75,6 +86,21 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 
     private boolean rollbackOnCommitFailure = false;
 
+    private boolean stacklessExceptions = false;
+
+    private boolean resourceAccounting = false;
+
+    private boolean synchronizationTiming = false;
+
+    @Nullable
+    private String transactionIdMdcKey = (slf4jMdcAvailable ? DEFAULT_TRANSACTION_ID_MDC_KEY : null);
+
+    private static final TransactionMonitor[] NO_MONITORS = new TransactionMonitor[0];
+
+    private static final long NO_TIMER = Long.MIN_VALUE;
+
+    private transient TransactionMonitor[] transactionMonitors = NO_MONITORS;
+
     /**
      * Return if this transaction manager should active the thread-bound
      * transaction synchronization support
@@ -218,6 +244,109 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
         return this.rollbackOnCommitFailure;
     }
 
+    /**
+     * Set whether the exceptions this manager throws for expected failure conditions
+     * (unexpected rollbacks, completed or missing transactions, timeouts of the resource
+     * holders prepared via {@link #prepareResourceHolder}) should skip filling in their stack
+     * trace. Their types and messages are unchanged. Stack traces are still filled in while
+     * debug logging is enabled for this manager. Default is "false"
+     * @param stacklessExceptions
+     */
+    public void setStacklessExceptions(boolean stacklessExceptions) {
+        this.stacklessExceptions = stacklessExceptions;
+    }
+
+    public boolean isStacklessExceptions() {
+        return this.stacklessExceptions;
+    }
+
+    /**
+     * Set the monitors to notify about the lifecycle of transactions managed here.
+     * Without monitors, no timing information is collected at all. Monitors are not
+     * serialized along with this manager
+     * @param transactionMonitors
+     */
+    public void setTransactionMonitors(TransactionMonitor... transactionMonitors) {
+        this.transactionMonitors = (transactionMonitors.length > 0 ? transactionMonitors.clone() : NO_MONITORS);
+    }
+
+    /**
+     * Add a monitor to notify about the lifecycle of transactions managed here.
+     * Intended for configuration time, not for use while transactions are running
+     * @param transactionMonitor
+     */
+    public void addTransactionMonitor(TransactionMonitor transactionMonitor) {
+        TransactionMonitor[] monitors = Arrays.copyOf(this.transactionMonitors, this.transactionMonitors.length + 1);
+        monitors[monitors.length - 1] = transactionMonitor;
+        this.transactionMonitors = monitors;
+    }
+
+    public List<TransactionMonitor> getTransactionMonitors() {
+        return Collections.unmodifiableList(Arrays.asList(this.transactionMonitors));
+    }
+
+    /**
+     * Set whether to record the CPU time and heap bytes allocated by the owning thread
+     * between begin and completion of each new transaction, exposed through
+     * {@link DefaultTransactionStatus#getCpuNanos()} and {@link DefaultTransactionStatus#getAllocatedBytes()}
+     * for the registered monitors. Only effective with monitors registered.
+     * Costs two {@link java.lang.management.ThreadMXBean} calls at begin and at completion,
+     * and a small accounting object attached to each new transaction's status.
+     * Default is "false"
+     * @param resourceAccounting
+     */
+    public void setResourceAccounting(boolean resourceAccounting) {
+        this.resourceAccounting = resourceAccounting;
+    }
+
+    public boolean isResourceAccounting() {
+        return this.resourceAccounting;
+    }
+
+    /**
+     * Set whether to time each single synchronization callback and report it to the
+     * registered monitors through {@link TransactionMonitor#afterSynchronizationCallback}.
+     * Only effective with monitors registered. Costs one {@link System#nanoTime()} pair
+     * per callback. Default is "false"
+     * @param synchronizationTiming
+     */
+    public void setSynchronizationTiming(boolean synchronizationTiming) {
+        this.synchronizationTiming = synchronizationTiming;
+    }
+
+    public boolean isSynchronizationTiming() {
+        return this.synchronizationTiming;
+    }
+
+    /**
+     * Set the SLF4J MDC key under which the current transaction id is exposed while
+     * the transaction is active, or {@code null} to not touch the MDC. The entry follows
+     * suspension and resumption of the transaction. Default is "transactionId" if SLF4J
+     * is present. Without SLF4J, the id remains available through
+     * {@link TransactionSynchronizationManager#getCurrentTransactionId()}
+     * @param transactionIdMdcKey
+     */
+    public void setTransactionIdMdcKey(@Nullable String transactionIdMdcKey) {
+        if (transactionIdMdcKey != null && !slf4jMdcAvailable) {
+            throw new IllegalStateException("Cannot expose transaction id in MDC: SLF4J not present");
+        }
+        this.transactionIdMdcKey = transactionIdMdcKey;
+    }
+
+    @Nullable
+    public String getTransactionIdMdcKey() {
+        return this.transactionIdMdcKey;
+    }
+
+    /**
+     * Return whether exceptions should be thrown without stack trace right now:
+     * stackless mode is on and debug logging is off
+     * @return
+     */
+    protected final boolean useStacklessExceptions() {
+        return (this.stacklessExceptions && !logger.isDebugEnabled());
+    }
+
     // --------------------------------------------
     // Implementation of PlatformTransactionManager
     // --------------------------------------------
@@ -232,6 +361,35 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
      */
     @Override
     public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        TransactionMonitor[] monitors = this.transactionMonitors;
+        if (monitors.length == 0) {
+            return obtainTransaction(definition);
+        }
+        boolean accounting = this.resourceAccounting;
+        long startCpuNanos = (accounting ? ThreadResourceUsage.currentThreadCpuNanos() : 0);
+        long startAllocatedBytes = (accounting ? ThreadResourceUsage.currentThreadAllocatedBytes() : 0);
+        long startNanos = System.nanoTime();
+        DefaultTransactionStatus status = (DefaultTransactionStatus) obtainTransaction(definition);
+        status.setStartNanos(startNanos);
+        long beginNanos = System.nanoTime() - startNanos;
+        if (accounting && status.isNewTransaction()) {
+            status.startResourceAccounting(startCpuNanos, startAllocatedBytes);
+        }
+        for (TransactionMonitor monitor : monitors) {
+            monitor.afterBegin(status, beginNanos);
+        }
+        return status;
+    }
+
+    /**
+     * Determine the transaction status for the given definition,
+     * applying the propagation behavior
+     *
+     * @param definition
+     * @return
+     * @throws TransactionException
+     */
+    private TransactionStatus obtainTransaction(@Nullable TransactionDefinition definition) throws TransactionException {
         Object transaction = doGetTransaction();
 
         // Cache debug flag to avoid repeated checks
@@ -254,8 +412,9 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 
         // No existing transaction found -> check propagation behavior to find out how to proceed
         if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_MANDATORY) {
-            throw new IllegalTransactionStateException(
-                    "No existing transaction found for transaction marked with propagation 'mandatory'");
+            throw StacklessTransactionExceptions.illegalTransactionState(
+                    "No existing transaction found for transaction marked with propagation 'mandatory'",
+                    useStacklessExceptions());
         } else if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRED ||
                 definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW ||
                 definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_NESTED) {
@@ -298,8 +457,9 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
     private TransactionStatus handleExistingTransaction(
             TransactionDefinition definition, Object transaction, boolean debugEnabled) throws TransactionException {
         if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_NEVER) {
-            throw new IllegalTransactionStateException(
-                    "Existing transaction found for transaction marked with propagation 'never'");
+            throw StacklessTransactionExceptions.illegalTransactionState(
+                    "Existing transaction found for transaction marked with propagation 'never'",
+                    useStacklessExceptions());
         }
 
         if (definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_NOT_SUPPORTED) {
@@ -348,7 +508,7 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                 // Usually uses JDBC 3.0 savepoints. Never activates Spring synchronization
                 DefaultTransactionStatus status =
                         prepareTransactionStatus(definition, transaction, false, false, debugEnabled, null);
-                status.createAndHoldSavepoint();
+                performSavepointOperation(status, SavepointOperation.CREATE);
                 return status;
             } else {
                 // Nested transaction through nested begin and commit/rollback calls.
@@ -428,9 +588,11 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
             boolean newSynchronization, boolean debug, @Nullable Object suspendedResources) {
         boolean actualNewSynchronization = newSynchronization &&
                 !TransactionSynchronizationManager.isSynchronizationActive();
-        return new DefaultTransactionStatus(
+        DefaultTransactionStatus status = new DefaultTransactionStatus(
                 transaction, newTransaction, actualNewSynchronization,
                 definition.isReadOnly(), debug, suspendedResources);
+        status.setDefinition(definition);
+        return status;
     }
 
     /**
@@ -444,7 +606,46 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                             definition.getIsolationLevel() : null);
             TransactionSynchronizationManager.setCurrentTransactionReadOnly(definition.isReadOnly());
             TransactionSynchronizationManager.setCurrentTransactionName(definition.getName());
+            if (status.hasTransaction()) {
+                status.setTransactionId(exposeNewTransactionId());
+            }
             TransactionSynchronizationManager.initSynchronization();
+        } else {
+            long transactionId = TransactionSynchronizationManager.getCurrentTransactionId();
+            // A transaction started within the synchronization of an empty scope,
+            // or without synchronization at all: withdrawn again at cleanup
+            if (transactionId == 0 && status.hasTransaction()) {
+                transactionId = exposeNewTransactionId();
+                status.setTransactionIdExposed();
+            }
+            status.setTransactionId(transactionId);
+        }
+    }
+
+    /**
+     * Assign a new transaction id, exposing it as the current one.
+     * Only scopes that actually have a transaction get an id
+     * @return the new id
+     */
+    private long exposeNewTransactionId() {
+        long transactionId = TransactionIdGenerator.nextId();
+        TransactionSynchronizationManager.setCurrentTransactionId(transactionId);
+        exposeTransactionIdInMdc(transactionId);
+        return transactionId;
+    }
+
+    /**
+     * Expose the given transaction id in the MDC, if configured
+     * @param transactionId the id, or 0 to remove the MDC entry
+     */
+    private void exposeTransactionIdInMdc(long transactionId) {
+        String mdcKey = this.transactionIdMdcKey;
+        if (mdcKey != null) {
+            if (transactionId != 0) {
+                Slf4jMdcAccessor.put(mdcKey, Long.toString(transactionId));
+            } else {
+                Slf4jMdcAccessor.remove(mdcKey);
+            }
         }
     }
 
@@ -463,6 +664,21 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
         return this.defaultTimeout;
     }
 
+    /**
+     * Prepare a resource holder for a new transaction, to be called by {@link #doBegin}
+     * implementations before binding the holder: applies the transaction timeout, and the
+     * stackless exception mode as determined by {@link #useStacklessExceptions()} at this point
+     * @param holder the resource holder to be bound
+     * @param definition the definition of the new transaction
+     */
+    protected void prepareResourceHolder(ResourceHolderSupport holder, TransactionDefinition definition) {
+        int timeout = determineTimeout(definition);
+        if (timeout != TransactionDefinition.TIMEOUT_DEFAULT) {
+            holder.setTimeoutSeconds(timeout);
+        }
+        holder.setStacklessExceptions(useStacklessExceptions());
+    }
+
     /**
      * Suspend the given transaction.Suspends transaction synchronization first,
      * then delegates to the {@code doSuspend} template method.
@@ -471,6 +687,23 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
      * @return
      */
     protected final SuspendedResourcesHolder suspend(@Nullable Object transaction) {
+        TransactionMonitor[] monitors = this.transactionMonitors;
+        if (monitors.length == 0) {
+            return doSuspendAll(transaction);
+        }
+        long startNanos = System.nanoTime();
+        SuspendedResourcesHolder holder = doSuspendAll(transaction);
+        if (holder != null) {
+            long suspendNanos = System.nanoTime() - startNanos;
+            for (TransactionMonitor monitor : monitors) {
+                monitor.afterSuspend(holder.name, suspendNanos);
+            }
+        }
+        return holder;
+    }
+
+    @Nullable
+    private SuspendedResourcesHolder doSuspendAll(@Nullable Object transaction) {
         if (TransactionSynchronizationManager.isSynchronizationActive()) {
             List<TransactionSynchronization> suspendedSynchronizations = doSuspendSynchronization();
             try {
@@ -480,14 +713,17 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                 }
                 String name = TransactionSynchronizationManager.getCurrentTransactionName();
                 TransactionSynchronizationManager.setCurrentTransactionName(null);
+                long transactionId = TransactionSynchronizationManager.getCurrentTransactionId();
+                TransactionSynchronizationManager.setCurrentTransactionId(0);
+                exposeTransactionIdInMdc(0);
                 boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
                 TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
                 Integer isolationLevel = TransactionSynchronizationManager.getCurrentTransactionIsolationLevel();
                 TransactionSynchronizationManager.setCurrentTransactionIsolationLevel(null);
                 boolean wasActive = TransactionSynchronizationManager.isActualTransactionActive();
                 TransactionSynchronizationManager.setActualTransactionActive(false);
-                return new SuspendedResourcesHolder(
-                        suspendedResources, suspendedSynchronizations, name, readOnly, isolationLevel, wasActive);
+                return new SuspendedResourcesHolder(suspendedResources, suspendedSynchronizations,
+                        name, transactionId, readOnly, isolationLevel, wasActive);
             } catch (RuntimeException | Error ex) {
                 // doSuspend failed - original transaction is still active
                 doResumeSynchronization(suspendedSynchronizations);
@@ -511,6 +747,20 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
      * @param resourcesHolder
      */
     protected final void resume(@Nullable Object transaction, @Nullable SuspendedResourcesHolder resourcesHolder) {
+        TransactionMonitor[] monitors = this.transactionMonitors;
+        if (monitors.length == 0 || resourcesHolder == null) {
+            doResumeAll(transaction, resourcesHolder);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        doResumeAll(transaction, resourcesHolder);
+        long resumeNanos = System.nanoTime() - startNanos;
+        for (TransactionMonitor monitor : monitors) {
+            monitor.afterResume(resourcesHolder.name, resumeNanos);
+        }
+    }
+
+    private void doResumeAll(@Nullable Object transaction, @Nullable SuspendedResourcesHolder resourcesHolder) {
         if (resourcesHolder != null) {
             Object suspendedResources = resourcesHolder.suspendedResources;
             if (suspendedResources != null) {
@@ -522,6 +772,8 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                 TransactionSynchronizationManager.setCurrentTransactionIsolationLevel(resourcesHolder.isolationLevel);
                 TransactionSynchronizationManager.setCurrentTransactionReadOnly(resourcesHolder.readOnly);
                 TransactionSynchronizationManager.setCurrentTransactionName(resourcesHolder.name);
+                TransactionSynchronizationManager.setCurrentTransactionId(resourcesHolder.transactionId);
+                exposeTransactionIdInMdc(resourcesHolder.transactionId);
                 doResumeSynchronization(suspendedSynchronizations);
             }
         }
@@ -582,9 +834,9 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
     @Override
     public void commit(TransactionStatus status) throws TransactionException {
         if (status.isCompleted()) {
-            throw new IllegalTransactionStateException(
-                    "Transaction is already completed - do not call commit or rollback more than once per transaction"
-            );
+            throw StacklessTransactionExceptions.illegalTransactionState(
+                    "Transaction is already completed - do not call commit or rollback more than once per transaction",
+                    useStacklessExceptions());
         }
         DefaultTransactionStatus defStatus = (DefaultTransactionStatus) status;
         if (defStatus.isLocalRollbackOnly()) {
@@ -612,6 +864,7 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
      * @param status
      */
     private void processCommit(DefaultTransactionStatus status) {
+        TransactionOutcome outcome = TransactionOutcome.FAILED;
         try {
             boolean beforeCompletionInvoked = false;
 
@@ -627,13 +880,23 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                         logger.debug("Releasing transaction savepoint");
                     }
                     unexpectedRollback = status.isGlobalRollbackOnly();
-                    status.releaseHeldSavepoint();
+                    performSavepointOperation(status, SavepointOperation.RELEASE);
                 } else if (status.isNewTransaction()) {
                     if (status.isDebug()) {
                         logger.debug("Initiating transaction commit");
                     }
                     unexpectedRollback = status.isGlobalRollbackOnly();
-                    doCommit(status);
+                    if (this.transactionMonitors.length == 0) {
+                        doCommit(status);
+                    }
+                    else {
+                        long commitStart = System.nanoTime();
+                        doCommit(status);
+                        long commitNanos = System.nanoTime() - commitStart;
+                        for (TransactionMonitor monitor : this.transactionMonitors) {
+                            monitor.afterCommit(status, commitNanos);
+                        }
+                    }
                 } else if (isFailEarlyOnGlobalRollbackOnly()) {
                     unexpectedRollback = status.isGlobalRollbackOnly();
                 }
@@ -641,15 +904,20 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                 // Throw UnexpectedRollbackException if we have a global rollback-only
                 // marker but still didn't get a corresponding exception from commit
                 if (unexpectedRollback) {
-                    throw new UnexpectedRollbackException(
-                            "Transaction silently rolled back because it has been marked as rollback-only");
+                    throw StacklessTransactionExceptions.unexpectedRollback(
+                            "Transaction silently rolled back because it has been marked as rollback-only",
+                            useStacklessExceptions());
                 }
             } catch (UnexpectedRollbackException ex) {
                 // can only be caused by doCommit
+                outcome = TransactionOutcome.UNEXPECTED_ROLLBACK;
                 triggerAfterCompletion(status, TransactionSynchronization.STATUS_ROLLED_BACK);
                 throw ex;
             } catch (TransactionException ex) {
                 // can only be caused by doCommit
+                if (ex instanceof TransactionTimedOutException) {
+                    outcome = TransactionOutcome.TIMED_OUT;
+                }
                 if (isRollbackOnCommitFailure()) {
                     doRollbackOnCommitException(status, ex);
                 } else {
@@ -661,18 +929,21 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                     triggerBeforeCommit(status);
                 }
                 doRollbackOnCommitException(status, ex);
+                outcome = TransactionOutcome.ROLLED_BACK;
                 throw ex;
             }
 
             // Trigger afterCommit callbacks,with an exception thrown there
             // propagated to callers but the transaction still considered as committed
+            outcome = TransactionOutcome.COMMITTED;
             try {
+                triggerAfterPhysicalCommit(status);
                 triggerAfterCommit(status);
             } finally {
                 triggerAfterCompletion(status, TransactionSynchronization.STATUS_COMMITTED);
             }
         } finally {
-            cleanupAfterCompletion(status);
+            cleanupAfterCompletion(status, outcome);
         }
     }
 
@@ -686,9 +957,9 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
     @Override
     public void rollback(TransactionStatus status) throws TransactionException {
         if (status.isCompleted()) {
-            throw new IllegalTransactionStateException(
-                    "Transaction is already completed - do not call commit or rollback more than once per transaction"
-            );
+            throw StacklessTransactionExceptions.illegalTransactionState(
+                    "Transaction is already completed - do not call commit or rollback more than once per transaction",
+                    useStacklessExceptions());
         }
         DefaultTransactionStatus defStatus = (DefaultTransactionStatus) status;
         processRollback(defStatus, false);
@@ -702,6 +973,7 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
      * @param unexpected
      */
     private void processRollback(DefaultTransactionStatus status, boolean unexpected) {
+        TransactionOutcome outcome = TransactionOutcome.FAILED;
         try {
             boolean unexpectedRollback = unexpected;
 
@@ -712,13 +984,23 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                     if (status.isDebug()) {
                         logger.debug("Rolling back transaction to savepoint");
                     }
-                    status.rollbackToHeldSavepoint();
+                    performSavepointOperation(status, SavepointOperation.ROLLBACK);
                 }
                 else if (status.isNewTransaction()) {
                     if (status.isDebug()) {
                         logger.debug("Initiating transaction rollback");
                     }
-                    doRollback(status);
+                    if (this.transactionMonitors.length == 0) {
+                        doRollback(status);
+                    }
+                    else {
+                        long rollbackStart = System.nanoTime();
+                        doRollback(status);
+                        long rollbackNanos = System.nanoTime() - rollbackStart;
+                        for (TransactionMonitor monitor : this.transactionMonitors) {
+                            monitor.afterRollback(status, rollbackNanos);
+                        }
+                    }
                 }
                 else {
                     // Participating in larger transaction
@@ -752,17 +1034,20 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                 throw ex;
             }
             triggerAfterCompletion(status,TransactionSynchronization.STATUS_ROLLED_BACK);
+            outcome = (status.getRollbackCause() instanceof TransactionTimedOutException ?
+                    TransactionOutcome.TIMED_OUT : unexpectedRollback ?
+                    TransactionOutcome.UNEXPECTED_ROLLBACK : TransactionOutcome.ROLLED_BACK);
 
             // Raise UnexpectedRollbackException if we had a global rollback-only marker
             if(unexpectedRollback)
             {
-                throw new UnexpectedRollbackException(
-                        "Transaction rolled back because it has been marked as rollback-only"
-                );
+                throw StacklessTransactionExceptions.unexpectedRollback(
+                        "Transaction rolled back because it has been marked as rollback-only",
+                        useStacklessExceptions());
             }
         }
         finally {
-            cleanupAfterCompletion(status);
+            cleanupAfterCompletion(status, outcome);
         }
     }
 
@@ -811,7 +1096,16 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
             {
                 logger.trace("Triggering beforeCommit synchronization");
             }
-            TransactionSynchronizationUtils.triggerBeforeCommit(status.isReadOnly());
+            long syncStart = startSynchronizationTimer();
+            if(syncStart != NO_TIMER && this.synchronizationTiming)
+            {
+                TransactionSynchronizationUtils.triggerBeforeCommit(status.isReadOnly(), status, this.transactionMonitors);
+            }
+            else
+            {
+                TransactionSynchronizationUtils.triggerBeforeCommit(status.isReadOnly());
+            }
+            stopSynchronizationTimer(status, syncStart);
         }
     }
 
@@ -826,7 +1120,42 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
             {
                 logger.trace("Triggering beforeCompletion synchronization");
             }
-            TransactionSynchronizationUtils.triggerBeforeCompletion();
+            long syncStart = startSynchronizationTimer();
+            if(syncStart != NO_TIMER && this.synchronizationTiming)
+            {
+                TransactionSynchronizationUtils.triggerBeforeCompletion(status, this.transactionMonitors);
+            }
+            else
+            {
+                TransactionSynchronizationUtils.triggerBeforeCompletion();
+            }
+            stopSynchronizationTimer(status, syncStart);
+        }
+    }
+
+    /**
+     * Trigger {@code afterPhysicalCommit} callbacks, if this scope owns both
+     * the synchronizations and the transaction that has just been committed
+     * @param status
+     */
+    private void triggerAfterPhysicalCommit(DefaultTransactionStatus status)
+    {
+        if(status.isNewSynchronization() && (!status.hasTransaction() || status.isNewTransaction()))
+        {
+            if (status.isDebug())
+            {
+                logger.trace("Triggering afterPhysicalCommit synchronization");
+            }
+            long syncStart = startSynchronizationTimer();
+            if(syncStart != NO_TIMER && this.synchronizationTiming)
+            {
+                TransactionSynchronizationUtils.triggerAfterPhysicalCommit(status, this.transactionMonitors);
+            }
+            else
+            {
+                TransactionSynchronizationUtils.triggerAfterPhysicalCommit();
+            }
+            stopSynchronizationTimer(status, syncStart);
         }
     }
 
@@ -838,7 +1167,16 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
             {
                 logger.trace("Triggering afterCommit synchronization");
             }
-            TransactionSynchronizationUtils.triggerAfterCommit();
+            long syncStart = startSynchronizationTimer();
+            if(syncStart != NO_TIMER && this.synchronizationTiming)
+            {
+                TransactionSynchronizationUtils.triggerAfterCommit(status, this.transactionMonitors);
+            }
+            else
+            {
+                TransactionSynchronizationUtils.triggerAfterCommit();
+            }
+            stopSynchronizationTimer(status, syncStart);
         }
     }
 
@@ -856,7 +1194,17 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
                }
                // No transaction or new transaction for the current scope ->
                // invoke the afterCompletion callbacks immediately
-               invokeAfterCompletion(synchronizations,completionStatus);
+               long syncStart = startSynchronizationTimer();
+               if(syncStart != NO_TIMER && this.synchronizationTiming)
+               {
+                   TransactionSynchronizationUtils.invokeAfterCompletion(
+                           synchronizations, completionStatus, status, this.transactionMonitors);
+               }
+               else
+               {
+                   invokeAfterCompletion(synchronizations,completionStatus);
+               }
+               stopSynchronizationTimer(status, syncStart);
            }
            else if(!synchronizations.isEmpty())
            {
@@ -868,30 +1216,119 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
        }
     }
 
+    /**
+     * Start timing synchronization callbacks, if monitors are registered
+     * @return the start time, or {@code NO_TIMER}
+     */
+    private long startSynchronizationTimer()
+    {
+        return (this.transactionMonitors.length > 0 ? System.nanoTime() : NO_TIMER);
+    }
+
+    /**
+     * Add the time since the given start to the synchronization time of the given status
+     * @param status
+     * @param syncStart
+     */
+    private void stopSynchronizationTimer(DefaultTransactionStatus status, long syncStart)
+    {
+        if(syncStart != NO_TIMER)
+        {
+            status.addSynchronizationNanos(System.nanoTime() - syncStart);
+        }
+    }
+
+    /**
+     * Perform the given savepoint operation on the given status,
+     * timing it if monitors are registered
+     * @param status
+     * @param operation
+     */
+    private void performSavepointOperation(DefaultTransactionStatus status, SavepointOperation operation)
+    {
+        TransactionMonitor[] monitors = this.transactionMonitors;
+        long startNanos = (monitors.length > 0 ? System.nanoTime() : NO_TIMER);
+        switch (operation)
+        {
+            case CREATE:
+                status.createAndHoldSavepoint();
+                break;
+            case RELEASE:
+                status.releaseHeldSavepoint();
+                break;
+            default:
+                status.rollbackToHeldSavepoint();
+        }
+        if(startNanos != NO_TIMER)
+        {
+            long operationNanos = System.nanoTime() - startNanos;
+            for(TransactionMonitor monitor: monitors)
+            {
+                monitor.afterSavepointOperation(status, operation, operationNanos);
+            }
+        }
+    }
+
+    /**
+     * Notify the registered monitors of the completion of the given status
+     * @param status
+     * @param outcome
+     */
+    private void notifyCompletion(DefaultTransactionStatus status, TransactionOutcome outcome)
+    {
+        TransactionMonitor[] monitors = this.transactionMonitors;
+        if(monitors.length > 0)
+        {
+            long durationNanos = System.nanoTime() - status.getStartNanos();
+            if(this.resourceAccounting && status.isNewTransaction())
+            {
+                status.stopResourceAccounting();
+            }
+            for(TransactionMonitor monitor: monitors)
+            {
+                monitor.afterCompletion(status, outcome, durationNanos);
+            }
+        }
+    }
+
     /**
      * Clean up after completion, clearing synchronization if necessary,
-     * and invoking doCleanupAfterCompletion
+     * and invoking doCleanupAfterCompletion. Monitors are notified before any
+     * suspended outer transaction is resumed, so that neither the duration nor
+     * the resource usage of the completed transaction include the resume
      * @param status
+     * @param outcome
      */
-    private void cleanupAfterCompletion(DefaultTransactionStatus status)
+    private void cleanupAfterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome)
     {
         status.setCompleted();
         if(status.isNewSynchronization())
         {
             TransactionSynchronizationManager.clear();
+            exposeTransactionIdInMdc(0);
+        }
+        else if(status.isTransactionIdExposed())
+        {
+            TransactionSynchronizationManager.setCurrentTransactionId(0);
+            exposeTransactionIdInMdc(0);
         }
         if(status.isNewTransaction())
         {
             doCleanupAfterCompletion(status.getTransaction());
         }
-        if(status.getSuspendedResources()!=null)
-        {
-           if(status.isDebug())
-           {
-               logger.debug("Resuming suspended transaction after completion of inner transaction");
-           }
-           Object transaction = (status.hasTransaction()) ? status.getTransaction(): null;
-           resume(transaction,(SuspendedResourcesHolder) status.getSuspendedResources());
+        try {
+            notifyCompletion(status, outcome);
+        }
+        finally {
+            if(status.getSuspendedResources()!=null)
+            {
+               if(status.isDebug())
+               {
+                   logger.debug("Resuming suspended transaction after completion of inner transaction");
+               }
+               Object transaction = (status.hasTransaction()) ? status.getTransaction(): null;
+               resume(transaction,(SuspendedResourcesHolder) status.getSuspendedResources());
+            }
         }
     }
 
@@ -1077,6 +1514,21 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 
         // Initialize transient fields
         this.logger = LogFactory.getLog(getClass());
+        this.transactionMonitors = NO_MONITORS;
+    }
+
+    /**
+     * Inner class to avoid a hard dependency on SLF4J
+     */
+    private static class Slf4jMdcAccessor {
+
+        public static void put(String key, String value) {
+            org.slf4j.MDC.put(key, value);
+        }
+
+        public static void remove(String key) {
+            org.slf4j.MDC.remove(key);
+        }
     }
 
     /**
@@ -1092,6 +1544,8 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
         @Nullable
         private String name;
 
+        private long transactionId;
+
         private boolean readOnly;
 
         @Nullable
@@ -1105,10 +1559,12 @@ public abstract class AbstractPlatformTransactionManager implements PlatformTran
 
         private SuspendedResourcesHolder(
                 @Nullable Object suspendedResources, List<TransactionSynchronization> suspendedSynchronizations,
-                @Nullable String name, boolean readOnly, @Nullable Integer isolationLevel, boolean wasActive) {
+                @Nullable String name, long transactionId, boolean readOnly, @Nullable Integer isolationLevel,
+                boolean wasActive) {
             this.suspendedResources = suspendedResources;
             this.suspendedSynchronizations = suspendedSynchronizations;
             this.name = name;
+            this.transactionId = transactionId;
             this.readOnly = readOnly;
             this.isolationLevel = isolationLevel;
             this.wasActive = wasActive;
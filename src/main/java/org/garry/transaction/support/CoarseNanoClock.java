@@ -0,0 +1,101 @@
+package org.garry.transaction.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Monotonic clock that trades precision for cost: a daemon ticker thread samples
+ * {@link System#nanoTime()} at a fixed resolution, and readers just load the last sample.
+ *
+ * The returned time lags the real one by at most the resolution (plus scheduling delay),
+ * so deadline checks against it may fire slightly late but never early.
+ * Intended for very hot time-to-live checks, see {@link ResourceHolderSupport#setCoarseClock}
+ */
+public final class CoarseNanoClock {
+
+    private static volatile CoarseNanoClock sharedInstance;
+
+    private final long resolutionNanos;
+
+    private final Thread ticker;
+
+    private volatile long nanoTime = System.nanoTime();
+
+    private volatile boolean running = true;
+
+    /**
+     * Create a new clock and start its ticker thread
+     * @param resolution the sampling interval
+     * @param unit the unit of the sampling interval
+     */
+    public CoarseNanoClock(long resolution, TimeUnit unit)
+    {
+        if(resolution <= 0)
+        {
+            throw new IllegalArgumentException("Resolution must be positive");
+        }
+        this.resolutionNanos = unit.toNanos(resolution);
+        this.ticker = new Thread(this::tick, "CoarseNanoClock-" + unit.toMillis(resolution) + "ms");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Return a clock with 1 millisecond resolution shared within this class loader,
+     * starting it on first access
+     * @return
+     */
+    public static CoarseNanoClock getSharedInstance()
+    {
+        CoarseNanoClock clock = sharedInstance;
+        if(clock == null)
+        {
+            synchronized (CoarseNanoClock.class)
+            {
+                clock = sharedInstance;
+                if(clock == null)
+                {
+                    clock = new CoarseNanoClock(1, TimeUnit.MILLISECONDS);
+                    sharedInstance = clock;
+                }
+            }
+        }
+        return clock;
+    }
+
+    /**
+     * Return the last sampled value of {@link System#nanoTime()}
+     * @return
+     */
+    public long nanoTime()
+    {
+        return this.nanoTime;
+    }
+
+    /**
+     * Return the sampling interval in nanoseconds
+     * @return
+     */
+    public long getResolutionNanos()
+    {
+        return this.resolutionNanos;
+    }
+
+    /**
+     * Stop the ticker thread; the clock stands still afterwards
+     */
+    public void stop()
+    {
+        this.running = false;
+        LockSupport.unpark(this.ticker);
+    }
+
+    private void tick()
+    {
+        while (this.running)
+        {
+            LockSupport.parkNanos(this, this.resolutionNanos);
+            this.nanoTime = System.nanoTime();
+        }
+    }
+}
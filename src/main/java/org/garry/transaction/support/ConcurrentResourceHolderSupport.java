@@ -0,0 +1,160 @@
+package org.garry.transaction.support;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Variant of {@link ResourceHolderSupport} whose mutable state may be accessed
+ * from several threads, e.g. when a transaction is completed asynchronously and
+ * {@link ResourceHolderSynchronization#afterCompletion} runs on a different thread
+ * than the one which requested the resource.
+ *
+ * Reference counting and state flags are updated via {@link VarHandle} atomics,
+ * so no monitor is ever taken. The timeout is expected to be set before the holder
+ * is published to other threads, as it is by the transaction managers.
+ */
+public abstract class ConcurrentResourceHolderSupport extends ResourceHolderSupport {
+
+    private static final VarHandle REFERENCE_COUNT;
+
+    private static final VarHandle VOID;
+
+    static
+    {
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            REFERENCE_COUNT = lookup.findVarHandle(ConcurrentResourceHolderSupport.class, "referenceCount", int.class);
+            VOID = lookup.findVarHandle(ConcurrentResourceHolderSupport.class, "isVoid", boolean.class);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private volatile boolean synchronizedWithTransaction = false;
+
+    private volatile boolean rollbackOnly = false;
+
+    private volatile int referenceCount = 0;
+
+    private volatile boolean isVoid = false;
+
+    @Override
+    public void setSynchronizedWithTransaction(boolean synchronizedWithTransaction)
+    {
+        this.synchronizedWithTransaction = synchronizedWithTransaction;
+    }
+
+    @Override
+    public boolean isSynchronizedWithTransaction()
+    {
+        return this.synchronizedWithTransaction;
+    }
+
+    @Override
+    public void setRollbackOnly()
+    {
+        this.rollbackOnly = true;
+    }
+
+    @Override
+    public void resetRollbackOnly()
+    {
+        this.rollbackOnly = false;
+    }
+
+    @Override
+    public boolean isRollbackOnly()
+    {
+        return this.rollbackOnly;
+    }
+
+    @Override
+    public void requested()
+    {
+        REFERENCE_COUNT.getAndAdd(this, 1);
+    }
+
+    @Override
+    public void released()
+    {
+        releaseAndCheckLast();
+    }
+
+    /**
+     * Decrease the reference count by one and return whether this call released
+     * the last open reference. Exactly one of several concurrent callers sees
+     * {@code true} for a given drop to zero, so it can safely close the resource.
+     * The count never drops below zero: an unbalanced release throws without changing it
+     * @return
+     */
+    public boolean releaseAndCheckLast()
+    {
+        int previous;
+        do
+        {
+            previous = this.referenceCount;
+            if(previous <= 0)
+            {
+                // Unbalanced release: refuse rather than let the count go negative
+                throw new IllegalStateException("Resource holder released more often than requested");
+            }
+        }
+        while(!REFERENCE_COUNT.weakCompareAndSet(this, previous, previous - 1));
+        return (previous == 1);
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return (this.referenceCount > 0);
+    }
+
+    /**
+     * Return the current reference count
+     * @return
+     */
+    public int getReferenceCount()
+    {
+        return this.referenceCount;
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        this.synchronizedWithTransaction = false;
+        this.rollbackOnly = false;
+    }
+
+    @Override
+    public void reset()
+    {
+        clear();
+        this.referenceCount = 0;
+    }
+
+    @Override
+    public void unbound()
+    {
+        markUnbound();
+    }
+
+    /**
+     * Mark this holder as unbound and return whether this call performed the
+     * transition, i.e. whether the caller is the first one to unbind it
+     * @return
+     */
+    public boolean markUnbound()
+    {
+        return VOID.compareAndSet(this, false, true);
+    }
+
+    @Override
+    public boolean isVoid()
+    {
+        return this.isVoid;
+    }
+}
@@ -31,7 +31,7 @@ public class DefaultTransactionDefinition implements TransactionDefinition, Seri
 
     private int timeout = TIMEOUT_DEFAULT;
 
-    private boolean readOnly = true;
+    private boolean readOnly = false;
 
 
     @Nullable
@@ -73,7 +73,7 @@ public class DefaultTransactionDefinition implements TransactionDefinition, Seri
      * in the TransactionDefinition interface.
      * @param propagationBehavior
      */
-    public final void setPropagationBehavior(int propagationBehavior)
+    public void setPropagationBehavior(int propagationBehavior)
     {
         if(!constants.getValues(PREFIX_PROPAGATION).contains(propagationBehavior))
         {
@@ -106,7 +106,7 @@ public class DefaultTransactionDefinition implements TransactionDefinition, Seri
      * in the TransactionDefinition interface.
      * @param isolationLevel
      */
-    public final void setIsolationLevel(int isolationLevel)
+    public void setIsolationLevel(int isolationLevel)
     {
         if(!constants.getValues(PREFIX_ISOLATION).contains(isolationLevel))
         {
@@ -117,14 +117,14 @@ public class DefaultTransactionDefinition implements TransactionDefinition, Seri
 
     @Override
     public int getTimeout() {
-        return 0;
+        return this.timeout;
     }
 
     /**
      * Set the timeout to apply, as number of seconds
      * @param timeout
      */
-    public final void setTimeout(int timeout)
+    public void setTimeout(int timeout)
     {
         if(timeout < TIMEOUT_DEFAULT)
         {
@@ -137,14 +137,14 @@ public class DefaultTransactionDefinition implements TransactionDefinition, Seri
      * Set whether to optimize as read-only transaction
      * @param readOnly
      */
-    public final void setReadOnly(boolean readOnly)
+    public void setReadOnly(boolean readOnly)
     {
         this.readOnly = readOnly;
     }
 
     @Override
     public boolean isReadOnly() {
-        return false;
+        return this.readOnly;
     }
 
     @Override
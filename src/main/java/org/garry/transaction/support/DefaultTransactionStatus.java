@@ -2,9 +2,13 @@ package org.garry.transaction.support;
 
 import org.garry.transaction.NestedTransactionNotSupportedException;
 import org.garry.transaction.SavepointManager;
+import org.garry.transaction.TransactionDefinition;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * Default implementation of the {@link org.garry.transaction.TransactionStatus}
  * interface, used by {@link AbstractPlatformTransactionManager}.Based on the conception
@@ -33,6 +37,23 @@ public class DefaultTransactionStatus extends AbstractTransactionStatus{
     @Nullable
     private final Object suspendedResources;
 
+    @Nullable
+    private TransactionDefinition definition;
+
+    private long startNanos;
+
+    private long transactionId;
+
+    private boolean transactionIdExposed;
+
+    @Nullable
+    private Throwable rollbackCause;
+
+    private long synchronizationNanos;
+
+    @Nullable
+    private Map<Object,Object> monitorAttributes;
+
     /**
      * Create a new DefaultTransactionStatus instance
      * @param transaction
@@ -105,6 +126,216 @@ public class DefaultTransactionStatus extends AbstractTransactionStatus{
         return this.suspendedResources;
     }
 
+    /**
+     * Set the definition this status was created for
+     * @param definition
+     */
+    public void setDefinition(@Nullable TransactionDefinition definition)
+    {
+        this.definition = definition;
+    }
+
+    /**
+     * Return the definition this status was created for, if known
+     * @return
+     */
+    @Nullable
+    public TransactionDefinition getDefinition()
+    {
+        return this.definition;
+    }
+
+    /**
+     * Set the id of the transaction this status belongs to
+     * @param transactionId
+     */
+    public void setTransactionId(long transactionId)
+    {
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * Return the id of the transaction this status belongs to, as exposed through
+     * {@link TransactionSynchronizationManager#getCurrentTransactionId()}, or 0 if none.
+     * Participating scopes share the id of the transaction they participate in
+     * @return
+     */
+    public long getTransactionId()
+    {
+        return this.transactionId;
+    }
+
+    /**
+     * Mark this status as having exposed its own transaction id without opening new
+     * synchronization, so that the id is withdrawn again at cleanup
+     */
+    void setTransactionIdExposed()
+    {
+        this.transactionIdExposed = true;
+    }
+
+    /**
+     * Return whether this status exposed its own transaction id without opening
+     * new synchronization
+     * @return
+     */
+    boolean isTransactionIdExposed()
+    {
+        return this.transactionIdExposed;
+    }
+
+    /**
+     * Set the {@link System#nanoTime()} value at which this transaction scope was requested
+     * @param startNanos
+     */
+    public void setStartNanos(long startNanos)
+    {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Return the {@link System#nanoTime()} value at which this transaction scope was requested.
+     * Only recorded when {@link TransactionMonitor}s are registered, 0 otherwise
+     * @return
+     */
+    public long getStartNanos()
+    {
+        return this.startNanos;
+    }
+
+    /**
+     * Add time spent in transaction synchronization callbacks for this status
+     * @param nanos
+     */
+    public void addSynchronizationNanos(long nanos)
+    {
+        this.synchronizationNanos += nanos;
+    }
+
+    /**
+     * Return the total time spent in transaction synchronization callbacks triggered
+     * for this status. Only recorded when {@link TransactionMonitor}s are registered
+     * @return
+     */
+    public long getSynchronizationNanos()
+    {
+        return this.synchronizationNanos;
+    }
+
+    /**
+     * Start resource accounting for this status from the given counter values
+     * of the current thread, taken before the transaction began. The accounting
+     * state is kept as a monitor attribute, so that statuses without resource
+     * accounting do not carry it
+     * @param startCpuNanos
+     * @param startAllocatedBytes
+     */
+    void startResourceAccounting(long startCpuNanos, long startAllocatedBytes)
+    {
+        setMonitorAttribute(ResourceUsage.class,
+                new ResourceUsage(Thread.currentThread().getId(), startCpuNanos, startAllocatedBytes));
+    }
+
+    /**
+     * Compute the CPU time and allocations since {@link #startResourceAccounting}.
+     * Nothing is recorded if the transaction completes on a different thread than
+     * the one it was started on, as the counters are per thread
+     */
+    void stopResourceAccounting()
+    {
+        ResourceUsage usage = (ResourceUsage) getMonitorAttribute(ResourceUsage.class);
+        if(usage == null || usage.threadId != Thread.currentThread().getId())
+        {
+            return;
+        }
+        if(usage.startCpuNanos != ThreadResourceUsage.UNAVAILABLE)
+        {
+            usage.cpuNanos = ThreadResourceUsage.currentThreadCpuNanos() - usage.startCpuNanos;
+        }
+        if(usage.startAllocatedBytes != ThreadResourceUsage.UNAVAILABLE)
+        {
+            usage.allocatedBytes = ThreadResourceUsage.currentThreadAllocatedBytes() - usage.startAllocatedBytes;
+        }
+    }
+
+    /**
+     * Return the CPU time consumed by the owning thread between begin and completion
+     * of this transaction, or -1 if not recorded. Only recorded for new transactions with
+     * {@link AbstractPlatformTransactionManager#setResourceAccounting resource accounting} enabled
+     * @return
+     */
+    public long getCpuNanos()
+    {
+        ResourceUsage usage = (ResourceUsage) getMonitorAttribute(ResourceUsage.class);
+        return (usage != null ? usage.cpuNanos : ThreadResourceUsage.UNAVAILABLE);
+    }
+
+    /**
+     * Return the heap bytes allocated by the owning thread between begin and completion
+     * of this transaction, or -1 if not recorded. Only recorded for new transactions with
+     * {@link AbstractPlatformTransactionManager#setResourceAccounting resource accounting} enabled
+     * @return
+     */
+    public long getAllocatedBytes()
+    {
+        ResourceUsage usage = (ResourceUsage) getMonitorAttribute(ResourceUsage.class);
+        return (usage != null ? usage.allocatedBytes : ThreadResourceUsage.UNAVAILABLE);
+    }
+
+    /**
+     * Record the exception that caused the upcoming rollback or commit of this status.
+     * Set by transaction templates and interceptors, for classification of the
+     * {@link TransactionOutcome}
+     * @param rollbackCause
+     */
+    public void setRollbackCause(@Nullable Throwable rollbackCause)
+    {
+        this.rollbackCause = rollbackCause;
+    }
+
+    /**
+     * Return the exception that caused the rollback of this status, if any
+     * @return
+     */
+    @Nullable
+    public Throwable getRollbackCause()
+    {
+        return this.rollbackCause;
+    }
+
+    /**
+     * Attach per-transaction state of a {@link TransactionMonitor} to this status,
+     * e.g. a timing event started in {@code afterBegin} and finished in {@code afterCompletion}
+     * @param key the key, typically the monitor itself (compared by identity)
+     * @param value the value, or {@code null} to remove it
+     */
+    public void setMonitorAttribute(Object key, @Nullable Object value)
+    {
+        if(value != null)
+        {
+            if(this.monitorAttributes == null)
+            {
+                this.monitorAttributes = new IdentityHashMap<>(4);
+            }
+            this.monitorAttributes.put(key, value);
+        }
+        else if(this.monitorAttributes != null)
+        {
+            this.monitorAttributes.remove(key);
+        }
+    }
+
+    /**
+     * Return the monitor state attached under the given key, if any
+     * @param key
+     * @return
+     */
+    @Nullable
+    public Object getMonitorAttribute(Object key)
+    {
+        return (this.monitorAttributes != null ? this.monitorAttributes.get(key) : null);
+    }
+
     //-------------------------------------------------------------------
     // Enable functionality through underlying transaction object
     //-------------------------------------------------------------------
@@ -159,4 +390,27 @@ public class DefaultTransactionStatus extends AbstractTransactionStatus{
     {
         return (this.transaction instanceof SavepointManager);
     }
+
+    /**
+     * Resource accounting state of a status, see {@link #startResourceAccounting}
+     */
+    private static final class ResourceUsage
+    {
+        final long threadId;
+
+        final long startCpuNanos;
+
+        final long startAllocatedBytes;
+
+        long cpuNanos = ThreadResourceUsage.UNAVAILABLE;
+
+        long allocatedBytes = ThreadResourceUsage.UNAVAILABLE;
+
+        ResourceUsage(long threadId, long startCpuNanos, long startAllocatedBytes)
+        {
+            this.threadId = threadId;
+            this.startCpuNanos = startCpuNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package org.garry.transaction.support;
+
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of direct {@link ByteBuffer} chunks, backing
+ * {@link TransactionBufferArena transaction-scoped buffer arenas}.
+ *
+ * Chunks come in size classes: the chunk size, and each power-of-two multiple of it up
+ * to the maximum chunk size, so that larger payloads are pooled as well. Requests beyond
+ * the maximum chunk size are rejected rather than served from unpooled direct memory.
+ *
+ * Direct memory is expensive to allocate and only reclaimed through GC of the
+ * owning buffer object, so chunks are kept for reuse up to a fixed number per size
+ * class, halved with each doubling of the size; chunks released beyond that are
+ * simply dropped. Thread-safe
+ */
+public class DirectBufferPool {
+
+    /**
+     * Default chunk size: 64 KB
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Default ratio of the maximum chunk size to the chunk size
+     */
+    private static final int DEFAULT_MAX_CHUNK_SIZE_FACTOR = 16;
+
+    private final int chunkSize;
+
+    private final int maxChunkSize;
+
+    /**
+     * Idle chunks per size class, class {@code i} holding chunks of {@code chunkSize << i} bytes
+     */
+    private final BlockingQueue<ByteBuffer>[] chunks;
+
+    /**
+     * Create a pool with default chunk size, keeping up to the given number of chunks
+     * @param maxPooledChunks
+     */
+    public DirectBufferPool(int maxPooledChunks)
+    {
+        this(DEFAULT_CHUNK_SIZE, maxPooledChunks);
+    }
+
+    /**
+     * Create a pool of chunks of the given size, keeping up to the given number of chunks.
+     * Larger chunks are available up to 16 times the chunk size
+     * @param chunkSize the size of each chunk in bytes
+     * @param maxPooledChunks the maximum number of idle chunks of the chunk size to keep
+     */
+    public DirectBufferPool(int chunkSize, int maxPooledChunks)
+    {
+        this(chunkSize, chunkSize * DEFAULT_MAX_CHUNK_SIZE_FACTOR, maxPooledChunks);
+    }
+
+    /**
+     * Create a pool of chunks of the given size and its power-of-two multiples up to
+     * the given maximum, keeping up to the given number of chunks of the chunk size
+     * @param chunkSize the size of the smallest chunks in bytes
+     * @param maxChunkSize the size of the largest chunks in bytes, a power-of-two
+     * multiple of the chunk size
+     * @param maxPooledChunks the maximum number of idle chunks of the chunk size to keep
+     */
+    @SuppressWarnings("unchecked")
+    public DirectBufferPool(int chunkSize, int maxChunkSize, int maxPooledChunks)
+    {
+        Assert.isTrue(chunkSize > 0, "Chunk size must be positive");
+        Assert.isTrue(maxChunkSize >= chunkSize && maxChunkSize % chunkSize == 0 &&
+                Integer.bitCount(maxChunkSize / chunkSize) == 1,
+                "Maximum chunk size must be a power-of-two multiple of the chunk size");
+        Assert.isTrue(maxPooledChunks > 0, "Maximum number of pooled chunks must be positive");
+        this.chunkSize = chunkSize;
+        this.maxChunkSize = maxChunkSize;
+        int sizeClasses = Integer.numberOfTrailingZeros(maxChunkSize / chunkSize) + 1;
+        this.chunks = new BlockingQueue[sizeClasses];
+        for(int i = 0; i < sizeClasses; i++)
+        {
+            this.chunks[i] = new ArrayBlockingQueue<>(Math.max(1, maxPooledChunks >> i));
+        }
+    }
+
+    /**
+     * Return the size of the smallest chunks in bytes
+     * @return
+     */
+    public int getChunkSize()
+    {
+        return this.chunkSize;
+    }
+
+    /**
+     * Return the size of the largest chunks in bytes
+     * @return
+     */
+    public int getMaxChunkSize()
+    {
+        return this.maxChunkSize;
+    }
+
+    /**
+     * Return the number of idle chunks currently pooled, of all sizes
+     * @return
+     */
+    public int getPooledChunkCount()
+    {
+        int count = 0;
+        for(BlockingQueue<ByteBuffer> sizeClass: this.chunks)
+        {
+            count += sizeClass.size();
+        }
+        return count;
+    }
+
+    /**
+     * Take an idle chunk of the chunk size from the pool, or allocate a new one
+     * @return a cleared chunk
+     */
+    public ByteBuffer acquireChunk()
+    {
+        return acquireChunk(0);
+    }
+
+    /**
+     * Take an idle chunk of at least the given size from the pool, or allocate a new one
+     * of the smallest size class that fits
+     * @param minSize the minimum capacity in bytes
+     * @return a cleared chunk
+     * @throws IllegalArgumentException if the size exceeds the maximum chunk size
+     */
+    public ByteBuffer acquireLargeChunk(int minSize)
+    {
+        if(minSize > this.maxChunkSize)
+        {
+            throw new IllegalArgumentException("Cannot allocate " + minSize +
+                    " bytes from buffer pool: maximum chunk size is " + this.maxChunkSize);
+        }
+        int sizeClass = 0;
+        while((this.chunkSize << sizeClass) < minSize)
+        {
+            sizeClass++;
+        }
+        return acquireChunk(sizeClass);
+    }
+
+    private ByteBuffer acquireChunk(int sizeClass)
+    {
+        ByteBuffer chunk = this.chunks[sizeClass].poll();
+        if(chunk == null)
+        {
+            chunk = ByteBuffer.allocateDirect(this.chunkSize << sizeClass);
+        }
+        return chunk;
+    }
+
+    /**
+     * Return a chunk obtained from {@link #acquireChunk()} or {@link #acquireLargeChunk(int)}
+     * to the pool
+     * @param chunk
+     */
+    public void releaseChunk(ByteBuffer chunk)
+    {
+        int capacity = chunk.capacity();
+        if(!chunk.isDirect() || capacity % this.chunkSize != 0 || Integer.bitCount(capacity / this.chunkSize) != 1)
+        {
+            return;
+        }
+        int sizeClass = Integer.numberOfTrailingZeros(capacity / this.chunkSize);
+        if(sizeClass < this.chunks.length)
+        {
+            chunk.clear();
+            this.chunks[sizeClass].offer(chunk);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.garry.transaction.support;
+
+/**
+ * Reset contract for transaction-scoped objects which may be recycled by a
+ * {@link SimpleTransactionScope} with {@link SimpleTransactionScope#setRecycleScopedObjects
+ * recycling} enabled, instead of being destroyed at transaction completion.
+ *
+ * Typically implemented by heavy scratch objects such as buffers, builders or parsers
+ */
+public interface RecyclableScopedObject {
+
+    /**
+     * Reset this object to the state of a freshly created instance, so that
+     * it can be handed out again in a later transaction on the same thread.
+     * Throwing an exception leads to regular destruction of this object instead
+     */
+    void resetForReuse();
+}
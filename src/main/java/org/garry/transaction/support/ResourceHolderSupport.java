@@ -3,8 +3,8 @@ package org.garry.transaction.support;
 import org.garry.transaction.TransactionTimedOutException;
 import org.springframework.lang.Nullable;
 
-import java.time.OffsetDateTime;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Convenient base class for resource holders.
@@ -12,6 +12,9 @@ import java.util.Date;
  * Features rollback-only support for participating transactions.
  * Can expire after a certain number of seconds or milliseconds
  * in order to determine a transactional timeout
+ *
+ * The deadline is kept as a monotonic {@link System#nanoTime()} value, so wall-clock
+ * adjustments do not affect timeouts; {@link #getDeadline()} is derived from it on demand
  */
 public abstract class ResourceHolderSupport implements ResourceHolder {
 
@@ -19,13 +22,25 @@ public abstract class ResourceHolderSupport implements ResourceHolder {
 
     private boolean rollbackOnly = false;
 
+    private boolean hasDeadline = false;
+
+    private long deadlineNanos;
+
+    /**
+     * Wall-clock view of the deadline, built lazily
+     */
     @Nullable
     private Date deadline;
 
+    @Nullable
+    private CoarseNanoClock coarseClock;
+
     private int referenceCount = 0;
 
     private boolean isVoid = false;
 
+    private boolean stacklessExceptions = false;
+
     /**
      * Mark the resource as synchronized with a transaction
      * @param synchronizedWithTransaction
@@ -85,7 +100,32 @@ public abstract class ResourceHolderSupport implements ResourceHolder {
      */
     public void setTimeoutInMillis(long millis)
     {
-        this.deadline = new Date(System.currentTimeMillis() + millis);
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        this.hasDeadline = true;
+        this.deadline = null;
+    }
+
+    /**
+     * Set a coarse clock to read the current time from in time-to-live checks,
+     * instead of calling {@link System#nanoTime()} on each check. Timeouts may then be
+     * detected up to the clock's resolution late. Default is none
+     * @param coarseClock
+     */
+    public void setCoarseClock(@Nullable CoarseNanoClock coarseClock)
+    {
+        this.coarseClock = coarseClock;
+    }
+
+    /**
+     * Set whether timeouts detected by this holder should throw a
+     * {@link TransactionTimedOutException} without stack trace.
+     * Set by {@link AbstractPlatformTransactionManager#prepareResourceHolder} according to the
+     * manager's stackless mode, so stack traces are kept while the manager logs at debug level
+     * @param stacklessExceptions
+     */
+    public void setStacklessExceptions(boolean stacklessExceptions)
+    {
+        this.stacklessExceptions = stacklessExceptions;
     }
 
     /**
@@ -94,15 +134,26 @@ public abstract class ResourceHolderSupport implements ResourceHolder {
      */
     public boolean hasTimeout()
     {
-        return (this.deadline != null);
+        return this.hasDeadline;
     }
 
     /**
-     * Return the expiration deadline of this object
+     * Return the expiration deadline of this object, as wall-clock time
+     * computed from the monotonic deadline
      * @return
      */
+    @Nullable
     public Date getDeadline()
     {
+        if(!this.hasDeadline)
+        {
+            return null;
+        }
+        if(this.deadline == null)
+        {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos - System.nanoTime());
+            this.deadline = new Date(System.currentTimeMillis() + remainingMillis);
+        }
         return this.deadline;
     }
 
@@ -126,13 +177,16 @@ public abstract class ResourceHolderSupport implements ResourceHolder {
      */
     public long getTimeToLiveMillis() throws TransactionTimedOutException
     {
-        if(this.deadline == null)
+        if(!this.hasDeadline)
         {
             throw new IllegalStateException("No timeout specified for this resource holder");
         }
-        long timeToLive = this.deadline.getTime() - System.currentTimeMillis();
-        checkTransactionTimeout(timeToLive <= 0);
-        return timeToLive;
+        CoarseNanoClock clock = this.coarseClock;
+        long now = (clock != null ? clock.nanoTime() : System.nanoTime());
+        long timeToLiveNanos = this.deadlineNanos - now;
+        checkTransactionTimeout(timeToLiveNanos <= 0);
+        // Round up, so that a remaining fraction of a millisecond doesn't read as no time left
+        return (timeToLiveNanos + 999_999) / 1_000_000;
     }
 
     /**
@@ -145,7 +199,8 @@ public abstract class ResourceHolderSupport implements ResourceHolder {
         if (deadlineReached)
         {
             setRollbackOnly();
-            throw new TransactionTimedOutException("Transaction timed out: deadline was "+ this.deadline);
+            throw StacklessTransactionExceptions.transactionTimedOut(
+                    "Transaction timed out: deadline was "+ getDeadline(), this.stacklessExceptions);
         }
     }
 
@@ -183,6 +238,7 @@ public abstract class ResourceHolderSupport implements ResourceHolder {
     {
         this.synchronizedWithTransaction = false;
         this.rollbackOnly = false;
+        this.hasDeadline = false;
         this.deadline = null;
     }
 
@@ -1,13 +1,48 @@
 package org.garry.transaction.support;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@link TransactionSynchronization} implementation that manages a
+ * {@link ResourceHolder} bound through {@link TransactionSynchronizationManager}.
+ *
+ * Deactivation of the holder is an atomic transition, so that completion callbacks
+ * racing on different threads release the resource only once
+ *
+ * With {@link #setReleaseAfterPhysicalCommit early release} enabled, the resource is
+ * unbound and released in {@link #afterPhysicalCommit()}, i.e. as soon as the physical
+ * commit has finished, instead of being held through the {@code afterCommit} and
+ * {@code afterCompletion} work of all other synchronizations. Data access code in those
+ * callbacks will then not see the released resource anymore
+ */
 public abstract class ResourceHolderSynchronization<H extends ResourceHolder, K> implements TransactionSynchronization{
 
     private final H resourceHolder;
 
     private final K resourceKey;
 
+    private static final VarHandle HOLDER_ACTIVE;
+
+    static
+    {
+        try
+        {
+            HOLDER_ACTIVE = MethodHandles.lookup().findVarHandle(
+                    ResourceHolderSynchronization.class, "holderActive", boolean.class);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
     private volatile boolean holderActive = true;
 
+    private boolean releaseAfterPhysicalCommit = false;
+
+    private volatile boolean releasedAfterPhysicalCommit = false;
+
     /**
      * Create a new ResourceHolderSynchronization for the given holder
      * @param resourceHolder the ResourceHolder to manager
@@ -18,6 +53,16 @@ public abstract class ResourceHolderSynchronization<H extends ResourceHolder, K>
         this.resourceKey = resourceKey;
     }
 
+    /**
+     * Set whether to release the resource right after the physical commit,
+     * before other synchronizations' after-commit callbacks run. Default is {@code false}
+     * @param releaseAfterPhysicalCommit
+     */
+    public void setReleaseAfterPhysicalCommit(boolean releaseAfterPhysicalCommit)
+    {
+        this.releaseAfterPhysicalCommit = releaseAfterPhysicalCommit;
+    }
+
     @Override
     public void suspend() {
         if (this.holderActive)
@@ -46,10 +91,9 @@ public abstract class ResourceHolderSynchronization<H extends ResourceHolder, K>
 
     @Override
     public void beforeCompletion() {
-        if(shouldUnbindAtCompletion())
+        if(shouldUnbindAtCompletion() && deactivateHolder())
         {
             TransactionSynchronizationManager.unbindResource(this.resourceKey);
-            this.holderActive = false;
             if(shouldReleaseBeforeCompletion())
             {
                 releaseResource(this.resourceHolder,this.resourceKey);
@@ -58,23 +102,56 @@ public abstract class ResourceHolderSynchronization<H extends ResourceHolder, K>
     }
 
     @Override
-    public void afterCommit() {
+    public void afterPhysicalCommit() {
+        if(!shouldUnbindAtCompletion() || !shouldReleaseAfterPhysicalCommit())
+        {
+            return;
+        }
         if(!shouldReleaseBeforeCompletion())
         {
             processResourceAfterCommit(this.resourceHolder);
         }
+        boolean releaseNecessary;
+        if(deactivateHolder())
+        {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.resourceKey);
+            this.resourceHolder.unbound();
+            releaseNecessary = true;
+        }
+        else
+        {
+            releaseNecessary = shouldReleaseAfterCompletion(this.resourceHolder);
+        }
+        if(releaseNecessary)
+        {
+            releaseResource(this.resourceHolder, this.resourceKey);
+        }
+        this.resourceHolder.reset();
+        this.releasedAfterPhysicalCommit = true;
+    }
+
+    @Override
+    public void afterCommit() {
+        if(!this.releasedAfterPhysicalCommit && !shouldReleaseBeforeCompletion())
+        {
+            processResourceAfterCommit(this.resourceHolder);
+        }
     }
 
     @Override
     public void afterCompletion(int status) {
+        if(this.releasedAfterPhysicalCommit)
+        {
+            // Already released and reset right after the physical commit
+            return;
+        }
         if(shouldUnbindAtCompletion())
         {
             boolean releaseNecessary = false;
-            if(this.holderActive)
+            if(deactivateHolder())
             {
                 // The thread-bound resource holder might not available anymore,
                 // since afterCompletion might get called from a different thread.
-                this.holderActive = false;
                 TransactionSynchronizationManager.unbindResourceIfPossible(this.resourceKey);
                 this.resourceHolder.unbound();
                 releaseNecessary = true;
@@ -96,6 +173,15 @@ public abstract class ResourceHolderSynchronization<H extends ResourceHolder, K>
         this.resourceHolder.reset();
     }
 
+    /**
+     * Atomically switch the holder from active to inactive
+     * @return whether this call performed the transition
+     */
+    private boolean deactivateHolder()
+    {
+        return HOLDER_ACTIVE.compareAndSet(this, true, false);
+    }
+
     /**
      * Return whether this holder should be unbound at completion
      * (or should rather be left bound to the thread after the transaction)
@@ -119,6 +205,17 @@ public abstract class ResourceHolderSynchronization<H extends ResourceHolder, K>
         return true;
     }
 
+    /**
+     * Return whether this holder's resource should be released right after the
+     * physical commit, ahead of all {@code afterCommit} and {@code afterCompletion} callbacks.
+     * The default implementation returns the value of {@link #setReleaseAfterPhysicalCommit}
+     * @return
+     */
+    protected boolean shouldReleaseAfterPhysicalCommit()
+    {
+        return this.releaseAfterPhysicalCommit;
+    }
+
     /**
      * Return whether this holder's resource should be released after
      * transaction completion ({@code true})
@@ -0,0 +1,23 @@
+package org.garry.transaction.support;
+
+/**
+ * Savepoint operation performed by {@link AbstractPlatformTransactionManager}
+ * for a nested transaction, as reported to {@link TransactionMonitor}s
+ */
+public enum SavepointOperation {
+
+    /**
+     * Savepoint created on begin of the nested transaction
+     */
+    CREATE,
+
+    /**
+     * Savepoint released on commit of the nested transaction
+     */
+    RELEASE,
+
+    /**
+     * Rollback to the savepoint on rollback of the nested transaction
+     */
+    ROLLBACK
+}
@@ -1,35 +1,170 @@
 package org.garry.transaction.support;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.config.Scope;
 import org.springframework.lang.Nullable;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A simple transaction-backed {@link org.springframework.beans.factory.config.Scope} implementation,delegating to
  * {@link TransactionSynchronizationManager}'s resource binding mechanism。
  *
- *
+ * With {@link #setRecycleScopedObjects recycling} enabled, the scope works as a per-thread
+ * arena: the holder maps are reused across transactions, and scoped objects implementing
+ * {@link RecyclableScopedObject} are reset and kept at completion, to be handed out again
+ * for the same bean name instead of creating a new instance. Their destruction callbacks
+ * only run once they are evicted from the pool: through {@link #evictPooledObjects()},
+ * or {@link #destroy()} on shutdown. Pools of threads that have terminated are evicted
+ * whenever another thread creates its pool, and on {@link #evictPooledObjects()}.
  */
-public class SimpleTransactionScope implements Scope {
+public class SimpleTransactionScope implements Scope, DisposableBean {
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    /**
+     * Maximum number of spare holders kept per thread, enough for a few levels of suspension
+     */
+    private static final int MAX_POOLED_HOLDERS = 4;
+
+    private boolean recycleScopedObjects = false;
+
+    private int maxPooledObjectsPerName = 4;
+
+    /**
+     * Pools of all threads, so that pooled objects can be evicted from any thread
+     */
+    private final Set<ScopedObjectsPool> allPools = ConcurrentHashMap.newKeySet();
+
+    private final ThreadLocal<ScopedObjectsPool> pools = ThreadLocal.withInitial(this::registerPool);
+
+    /**
+     * Set whether to reuse holder maps and recycle {@link RecyclableScopedObject} instances
+     * across transactions on the same thread. Default is {@code false}
+     * @param recycleScopedObjects
+     */
+    public void setRecycleScopedObjects(boolean recycleScopedObjects)
+    {
+        this.recycleScopedObjects = recycleScopedObjects;
+    }
+
+    /**
+     * Set the maximum number of recycled instances kept per bean name and thread.
+     * Default is 4
+     * @param maxPooledObjectsPerName
+     */
+    public void setMaxPooledObjectsPerName(int maxPooledObjectsPerName)
+    {
+        this.maxPooledObjectsPerName = maxPooledObjectsPerName;
+    }
+
 
+    /**
+     * Evict all recycled instances from the pools of all threads, running their
+     * destruction callbacks. Instances in use by current transactions are not affected.
+     * Pools of terminated threads are dropped altogether
+     */
+    public void evictPooledObjects()
+    {
+        for(Iterator<ScopedObjectsPool> it = this.allPools.iterator(); it.hasNext();)
+        {
+            ScopedObjectsPool pool = it.next();
+            if(!pool.thread.isAlive())
+            {
+                it.remove();
+            }
+            destroyPooledObjects(pool);
+        }
+    }
+
+    /**
+     * Create the pool of the current thread, registering it for eviction. Pools of
+     * threads that have terminated since are evicted on the way, as nothing else
+     * would ever run their destruction callbacks
+     * @return
+     */
+    private ScopedObjectsPool registerPool()
+    {
+        for(Iterator<ScopedObjectsPool> it = this.allPools.iterator(); it.hasNext();)
+        {
+            ScopedObjectsPool pool = it.next();
+            if(!pool.thread.isAlive())
+            {
+                it.remove();
+                destroyPooledObjects(pool);
+            }
+        }
+        ScopedObjectsPool pool = new ScopedObjectsPool(Thread.currentThread());
+        this.allPools.add(pool);
+        return pool;
+    }
+
+    private void destroyPooledObjects(ScopedObjectsPool pool)
+    {
+        for(PooledObject pooled : pool.drain())
+        {
+            if(pooled.destructionCallback != null)
+            {
+                try {
+                    pooled.destructionCallback.run();
+                }
+                catch (RuntimeException ex)
+                {
+                    logger.warn("Destruction callback of pooled scoped object [" + pooled.instance + "] failed", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts all pooled instances on shutdown
+     * @see #evictPooledObjects()
+     */
+    @Override
+    public void destroy()
+    {
+        evictPooledObjects();
+    }
 
     @Override
     public Object get(String name, ObjectFactory<?> objectFactory) {
         ScopedObjectsHolder scopedObjects = (ScopedObjectsHolder) TransactionSynchronizationManager.getResource(this);
         if (scopedObjects == null)
         {
-           scopedObjects = new ScopedObjectsHolder();
+           scopedObjects = (this.recycleScopedObjects ? this.pools.get().obtainHolder() : new ScopedObjectsHolder());
            TransactionSynchronizationManager.registerSynchronization(new CleanupSynchronization(scopedObjects));
            TransactionSynchronizationManager.bindResource(this,scopedObjects);
         }
         Object scopedObject = scopedObjects.scopedInstances.get(name);
         if(scopedObject == null)
         {
-            scopedObject = objectFactory.getObject();
+            if(this.recycleScopedObjects)
+            {
+                PooledObject pooled = this.pools.get().take(name);
+                if(pooled != null)
+                {
+                    scopedObject = pooled.instance;
+                    if(pooled.destructionCallback != null)
+                    {
+                        scopedObjects.destructionCallbacks.put(name, pooled.destructionCallback);
+                    }
+                }
+            }
+            if(scopedObject == null)
+            {
+                scopedObject = objectFactory.getObject();
+            }
             scopedObjects.scopedInstances.put(name,scopedObject);
         }
         return scopedObject;
@@ -79,6 +214,86 @@ public class SimpleTransactionScope implements Scope {
         final Map<String,Runnable> destructionCallbacks = new LinkedHashMap<>();
     }
 
+    private static final class PooledObject
+    {
+        final Object instance;
+
+        @Nullable
+        final Runnable destructionCallback;
+
+        PooledObject(Object instance, @Nullable Runnable destructionCallback)
+        {
+            this.instance = instance;
+            this.destructionCallback = destructionCallback;
+        }
+    }
+
+    /**
+     * Per-thread pool of spare holders and recycled scoped objects. Holders are only ever
+     * accessed by the owning thread; recycled objects are guarded by the pool's monitor,
+     * which is uncontended except for eviction from another thread
+     */
+    private static final class ScopedObjectsPool
+    {
+        final Thread thread;
+
+        private final ArrayDeque<ScopedObjectsHolder> holders = new ArrayDeque<>();
+
+        private final Map<String,ArrayDeque<PooledObject>> objects = new HashMap<>();
+
+        ScopedObjectsPool(Thread thread)
+        {
+            this.thread = thread;
+        }
+
+        ScopedObjectsHolder obtainHolder()
+        {
+            ScopedObjectsHolder holder = this.holders.poll();
+            return (holder != null ? holder : new ScopedObjectsHolder());
+        }
+
+        void releaseHolder(ScopedObjectsHolder holder)
+        {
+            if(this.holders.size() < MAX_POOLED_HOLDERS)
+            {
+                this.holders.push(holder);
+            }
+        }
+
+        @Nullable
+        synchronized PooledObject take(String name)
+        {
+            ArrayDeque<PooledObject> pooled = this.objects.get(name);
+            return (pooled != null ? pooled.poll() : null);
+        }
+
+        synchronized boolean offer(String name, PooledObject object, int maxPerName)
+        {
+            ArrayDeque<PooledObject> pooled = this.objects.computeIfAbsent(name, key -> new ArrayDeque<>());
+            if(pooled.size() >= maxPerName)
+            {
+                return false;
+            }
+            pooled.push(object);
+            return true;
+        }
+
+        /**
+         * Remove and return all pooled objects
+         * @return
+         */
+        synchronized List<PooledObject> drain()
+        {
+            List<PooledObject> drained = new ArrayList<>();
+            for(ArrayDeque<PooledObject> pooled : this.objects.values())
+            {
+                drained.addAll(pooled);
+            }
+            this.objects.clear();
+            return drained;
+        }
+    }
+
     private class CleanupSynchronization extends TransactionSynchronizationAdapter
     {
         private final ScopedObjectsHolder scopedObjects;
@@ -100,12 +315,58 @@ public class SimpleTransactionScope implements Scope {
         @Override
         public void afterCompletion(int status) {
            TransactionSynchronizationManager.unbindResourceIfPossible(SimpleTransactionScope.this);
+           ScopedObjectsPool pool = (recycleScopedObjects ? pools.get() : null);
+           if(pool != null)
+           {
+               recycleScopedObjects(pool);
+           }
            for(Runnable callback: this.scopedObjects.destructionCallbacks.values())
            {
                callback.run();
            }
            this.scopedObjects.destructionCallbacks.clear();
            this.scopedObjects.scopedInstances.clear();
+           if(pool != null)
+           {
+               pool.releaseHolder(this.scopedObjects);
+           }
+        }
+
+        /**
+         * Move recyclable instances into the pool, taking their destruction callbacks
+         * along so that they neither run now nor get lost
+         * @param pool
+         */
+        private void recycleScopedObjects(ScopedObjectsPool pool)
+        {
+            Iterator<Map.Entry<String,Object>> it = this.scopedObjects.scopedInstances.entrySet().iterator();
+            while (it.hasNext())
+            {
+                Map.Entry<String,Object> entry = it.next();
+                if(!(entry.getValue() instanceof RecyclableScopedObject))
+                {
+                    continue;
+                }
+                String name = entry.getKey();
+                try {
+                    ((RecyclableScopedObject) entry.getValue()).resetForReuse();
+                }
+                catch (RuntimeException ex)
+                {
+                    // Not reusable: regular destruction below
+                    if(logger.isDebugEnabled())
+                    {
+                        logger.debug("Could not reset scoped object '" + name + "' for reuse - destroying it", ex);
+                    }
+                    continue;
+                }
+                PooledObject pooled = new PooledObject(entry.getValue(), this.scopedObjects.destructionCallbacks.get(name));
+                if(pool.offer(name, pooled, maxPooledObjectsPerName))
+                {
+                    this.scopedObjects.destructionCallbacks.remove(name);
+                    it.remove();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,88 @@
+package org.garry.transaction.support;
+
+import org.garry.transaction.IllegalTransactionStateException;
+import org.garry.transaction.TransactionTimedOutException;
+import org.garry.transaction.UnexpectedRollbackException;
+
+/**
+ * Factory for the {@link org.garry.transaction.TransactionException} subclasses that are
+ * thrown on hot paths, such as commits of global rollback-only transactions and expired
+ * resource holders.
+ *
+ * In stackless mode the returned exceptions are subclasses of the regular types that skip
+ * {@link Throwable#fillInStackTrace()}: catch clauses, messages and {@code toString()} are
+ * unchanged, but no stack walk is paid per throw. Each call still returns a new instance,
+ * since shared instances could pick up causes or suppressed exceptions from callers
+ */
+abstract class StacklessTransactionExceptions {
+
+    static UnexpectedRollbackException unexpectedRollback(String msg, boolean stackless)
+    {
+        return (stackless ? new StacklessUnexpectedRollbackException(msg) : new UnexpectedRollbackException(msg));
+    }
+
+    static IllegalTransactionStateException illegalTransactionState(String msg, boolean stackless)
+    {
+        return (stackless ? new StacklessIllegalTransactionStateException(msg) :
+                new IllegalTransactionStateException(msg));
+    }
+
+    static TransactionTimedOutException transactionTimedOut(String msg, boolean stackless)
+    {
+        return (stackless ? new StacklessTransactionTimedOutException(msg) : new TransactionTimedOutException(msg));
+    }
+
+    private static class StacklessUnexpectedRollbackException extends UnexpectedRollbackException
+    {
+        StacklessUnexpectedRollbackException(String msg)
+        {
+            super(msg);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return UnexpectedRollbackException.class.getName() + ": " + getLocalizedMessage();
+        }
+    }
+
+    private static class StacklessIllegalTransactionStateException extends IllegalTransactionStateException
+    {
+        StacklessIllegalTransactionStateException(String msg)
+        {
+            super(msg);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return IllegalTransactionStateException.class.getName() + ": " + getLocalizedMessage();
+        }
+    }
+
+    private static class StacklessTransactionTimedOutException extends TransactionTimedOutException
+    {
+        StacklessTransactionTimedOutException(String msg)
+        {
+            super(msg);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return TransactionTimedOutException.class.getName() + ": " + getLocalizedMessage();
+        }
+    }
+}
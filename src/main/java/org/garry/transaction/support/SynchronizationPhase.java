@@ -0,0 +1,33 @@
+package org.garry.transaction.support;
+
+/**
+ * Callback phase of a {@link TransactionSynchronization}, as reported to
+ * {@link TransactionMonitor}s with synchronization timing enabled
+ */
+public enum SynchronizationPhase {
+
+    /**
+     * {@link TransactionSynchronization#beforeCommit}
+     */
+    BEFORE_COMMIT,
+
+    /**
+     * {@link TransactionSynchronization#beforeCompletion}
+     */
+    BEFORE_COMPLETION,
+
+    /**
+     * {@link TransactionSynchronization#afterPhysicalCommit}
+     */
+    AFTER_PHYSICAL_COMMIT,
+
+    /**
+     * {@link TransactionSynchronization#afterCommit}
+     */
+    AFTER_COMMIT,
+
+    /**
+     * {@link TransactionSynchronization#afterCompletion}
+     */
+    AFTER_COMPLETION
+}
@@ -0,0 +1,92 @@
+package org.garry.transaction.support;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Access to the CPU time and heap allocation counters of the current thread,
+ * as far as supported by the JVM. Used for per-transaction resource accounting
+ * (see {@link AbstractPlatformTransactionManager#setResourceAccounting}).
+ *
+ * Allocation counters are only available through the {@code com.sun.management}
+ * extension of {@link ThreadMXBean} (HotSpot and derived JVMs).
+ */
+abstract class ThreadResourceUsage {
+
+    /**
+     * Value returned when a counter is not available
+     */
+    static final long UNAVAILABLE = -1;
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private static final boolean cpuTimeSupported = initCpuTimeSupport();
+
+    private static final boolean allocationSupported = initAllocationSupport();
+
+    private static boolean initCpuTimeSupport()
+    {
+        try
+        {
+            if(!threadMXBean.isCurrentThreadCpuTimeSupported())
+            {
+                return false;
+            }
+            if(!threadMXBean.isThreadCpuTimeEnabled())
+            {
+                threadMXBean.setThreadCpuTimeEnabled(true);
+            }
+            return true;
+        }
+        catch (UnsupportedOperationException | SecurityException ex)
+        {
+            return false;
+        }
+    }
+
+    private static boolean initAllocationSupport()
+    {
+        try
+        {
+            if(!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+            {
+                return false;
+            }
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if(!sunThreadMXBean.isThreadAllocatedMemorySupported())
+            {
+                return false;
+            }
+            if(!sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+            {
+                sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return true;
+        }
+        catch (UnsupportedOperationException | SecurityException | LinkageError ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Return the CPU time consumed by the current thread so far, in nanoseconds,
+     * or {@link #UNAVAILABLE}
+     * @return
+     */
+    static long currentThreadCpuNanos()
+    {
+        return (cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : UNAVAILABLE);
+    }
+
+    /**
+     * Return the heap bytes allocated by the current thread so far, or {@link #UNAVAILABLE}
+     * @return
+     */
+    static long currentThreadAllocatedBytes()
+    {
+        return (allocationSupported ?
+                ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId()) :
+                UNAVAILABLE);
+    }
+}
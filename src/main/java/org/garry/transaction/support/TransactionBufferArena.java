@@ -0,0 +1,178 @@
+package org.garry.transaction.support;
+
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transaction-scoped scratch memory: hands out direct {@link ByteBuffer} slices,
+ * bump-allocated from chunks of a {@link DirectBufferPool}. All chunks go back to the
+ * pool at transaction completion, so large transient payloads neither live on the
+ * Java heap nor need to be collected.
+ *
+ * Obtain the arena of the current transaction via {@link #getArena(DirectBufferPool)},
+ * which binds it through {@link TransactionSynchronizationManager} with the pool as key.
+ * {@link #getArena(DirectBufferPool, boolean)} can return the chunks right after the
+ * physical commit instead.
+ * Buffers handed out must not be used after the transaction has completed,
+ * since their memory will be reused by other transactions
+ */
+public class TransactionBufferArena extends ResourceHolderSupport {
+
+    private static final int ALIGNMENT = 8;
+
+    private final DirectBufferPool pool;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>(4);
+
+    private ByteBuffer currentChunk;
+
+    private long allocatedBytes;
+
+    /**
+     * Create a new arena drawing chunks from the given pool
+     * @param pool
+     */
+    public TransactionBufferArena(DirectBufferPool pool)
+    {
+        Assert.notNull(pool, "DirectBufferPool must not be null");
+        this.pool = pool;
+    }
+
+    /**
+     * Return the arena bound to the current transaction, creating and binding
+     * it on first access
+     * @param pool the pool to draw chunks from, also serving as resource key
+     * @return
+     * @throws IllegalStateException if transaction synchronization is not active
+     */
+    public static TransactionBufferArena getArena(DirectBufferPool pool)
+    {
+        return getArena(pool, false);
+    }
+
+    /**
+     * Return the arena bound to the current transaction, creating and binding
+     * it on first access
+     * @param pool the pool to draw chunks from, also serving as resource key
+     * @param releaseAfterPhysicalCommit whether the arena's chunks go back to the pool right
+     * after the physical commit, before other synchronizations' after-commit callbacks run,
+     * instead of at completion. Only applies when the arena is created by this call
+     * @return
+     * @throws IllegalStateException if transaction synchronization is not active
+     * @see ResourceHolderSynchronization#setReleaseAfterPhysicalCommit
+     */
+    public static TransactionBufferArena getArena(DirectBufferPool pool, boolean releaseAfterPhysicalCommit)
+    {
+        TransactionBufferArena arena = (TransactionBufferArena) TransactionSynchronizationManager.getResource(pool);
+        if(arena != null)
+        {
+            return arena;
+        }
+        if(!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            throw new IllegalStateException("No transaction synchronization active - cannot bind buffer arena");
+        }
+        arena = new TransactionBufferArena(pool);
+        arena.setSynchronizedWithTransaction(true);
+        ArenaSynchronization synchronization = new ArenaSynchronization(arena, pool);
+        synchronization.setReleaseAfterPhysicalCommit(releaseAfterPhysicalCommit);
+        TransactionSynchronizationManager.registerSynchronization(synchronization);
+        TransactionSynchronizationManager.bindResource(pool, arena);
+        return arena;
+    }
+
+    /**
+     * Allocate a buffer of the given size, with position 0 and limit equal to the size.
+     * Requests larger than the chunk size get a dedicated larger chunk from the pool
+     * @param size the size in bytes
+     * @return
+     * @throws IllegalArgumentException if the size exceeds the pool's maximum chunk size
+     */
+    public ByteBuffer allocate(int size)
+    {
+        Assert.isTrue(size >= 0, "Size must not be negative");
+        if(size > this.pool.getChunkSize())
+        {
+            ByteBuffer largeChunk = this.pool.acquireLargeChunk(size);
+            this.chunks.add(largeChunk);
+            this.allocatedBytes += size;
+            ByteBuffer slice = largeChunk.duplicate();
+            slice.limit(size);
+            return slice.slice();
+        }
+        this.allocatedBytes += size;
+        ByteBuffer chunk = this.currentChunk;
+        if(chunk == null || chunk.remaining() < size)
+        {
+            chunk = this.pool.acquireChunk();
+            this.chunks.add(chunk);
+            this.currentChunk = chunk;
+        }
+        int start = chunk.position();
+        ByteBuffer slice = chunk.duplicate();
+        slice.limit(start + size);
+        slice = slice.slice();
+        // Keep subsequent slices aligned
+        chunk.position(Math.min(chunk.capacity(), (start + size + ALIGNMENT - 1) & -ALIGNMENT));
+        return slice;
+    }
+
+    /**
+     * Return the total number of bytes requested from this arena
+     * @return
+     */
+    public long getAllocatedBytes()
+    {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Return the number of pooled chunks currently held by this arena
+     * @return
+     */
+    public int getChunkCount()
+    {
+        return this.chunks.size();
+    }
+
+    /**
+     * Return all chunks to the pool
+     */
+    void releaseChunks()
+    {
+        for(ByteBuffer chunk: this.chunks)
+        {
+            this.pool.releaseChunk(chunk);
+        }
+        this.chunks.clear();
+        this.currentChunk = null;
+        this.allocatedBytes = 0;
+    }
+
+    /**
+     * Releases the arena's chunks after completion, once the payloads have been
+     * consumed by commit processing
+     */
+    private static class ArenaSynchronization extends ResourceHolderSynchronization<TransactionBufferArena, DirectBufferPool>
+    {
+        ArenaSynchronization(TransactionBufferArena arena, DirectBufferPool pool)
+        {
+            super(arena, pool);
+        }
+
+        @Override
+        protected boolean shouldReleaseBeforeCompletion()
+        {
+            return false;
+        }
+
+        @Override
+        protected void releaseResource(TransactionBufferArena arena, DirectBufferPool pool)
+        {
+            arena.releaseChunks();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.garry.transaction.support;
+
+import org.springframework.core.NamedThreadLocal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of transaction ids, assigned by {@link AbstractPlatformTransactionManager}
+ * on transaction begin and exposed through
+ * {@link TransactionSynchronizationManager#getCurrentTransactionId()}.
+ *
+ * Each thread reserves a block of ids from a shared counter and hands them out locally,
+ * so the shared counter is only touched once every {@value #BLOCK_SIZE} transactions
+ * per thread. Ids are unique within the JVM, positive and increasing per thread;
+ * across threads they are only roughly ordered by begin time
+ */
+public abstract class TransactionIdGenerator {
+
+    /**
+     * Number of ids reserved per thread at once
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    private static final AtomicLong nextBlock = new AtomicLong(1);
+
+    private static final ThreadLocal<IdBlock> idBlocks = new NamedThreadLocal<IdBlock>("Transaction id block") {
+        @Override
+        protected IdBlock initialValue() {
+            return new IdBlock();
+        }
+    };
+
+    /**
+     * Return a new transaction id, never 0
+     * @return
+     */
+    public static long nextId()
+    {
+        IdBlock block = idBlocks.get();
+        if(block.next == block.limit)
+        {
+            block.next = nextBlock.getAndAdd(BLOCK_SIZE);
+            block.limit = block.next + BLOCK_SIZE;
+        }
+        return block.next++;
+    }
+
+    private static final class IdBlock
+    {
+        long next;
+
+        long limit;
+    }
+}
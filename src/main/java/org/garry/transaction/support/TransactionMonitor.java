@@ -0,0 +1,108 @@
+package org.garry.transaction.support;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Callback interface for observing the transaction lifecycle of an
+ * {@link AbstractPlatformTransactionManager}, e.g. for metrics or tracing.
+ * Registered via {@link AbstractPlatformTransactionManager#setTransactionMonitors}.
+ *
+ * Callbacks run synchronously on the transaction's thread, so implementations
+ * should be cheap and must not throw. Durations are in nanoseconds.
+ * {@link DefaultTransactionStatus#getDefinition()} and
+ * {@link DefaultTransactionStatus#getStartNanos()} are available on all statuses
+ * passed in.
+ */
+public interface TransactionMonitor {
+
+    /**
+     * Invoked when {@code getTransaction} returns, for new transactions as well as
+     * participating, nested (savepoint) and empty transaction scopes
+     * @param status the status returned to the caller
+     * @param beginNanos the time spent in {@code getTransaction},
+     *                   including suspension of an outer transaction and {@code doBegin}
+     */
+    default void afterBegin(DefaultTransactionStatus status, long beginNanos)
+    {
+
+    }
+
+    /**
+     * Invoked after the current transaction or synchronization has been suspended
+     * @param transactionName the name of the suspended transaction, if any
+     * @param suspendNanos
+     */
+    default void afterSuspend(@Nullable String transactionName, long suspendNanos)
+    {
+
+    }
+
+    /**
+     * Invoked after a suspended transaction or synchronization has been resumed
+     * @param transactionName the name of the resumed transaction, if any
+     * @param resumeNanos
+     */
+    default void afterResume(@Nullable String transactionName, long resumeNanos)
+    {
+
+    }
+
+    /**
+     * Invoked after a successful physical commit ({@code doCommit})
+     * @param status
+     * @param commitNanos the time spent in {@code doCommit}
+     */
+    default void afterCommit(DefaultTransactionStatus status, long commitNanos)
+    {
+
+    }
+
+    /**
+     * Invoked after a successful physical rollback ({@code doRollback})
+     * @param status
+     * @param rollbackNanos the time spent in {@code doRollback}
+     */
+    default void afterRollback(DefaultTransactionStatus status, long rollbackNanos)
+    {
+
+    }
+
+    /**
+     * Invoked after a savepoint operation for a nested transaction
+     * @param status the status of the nested transaction
+     * @param operation
+     * @param operationNanos the time spent in the operation
+     */
+    default void afterSavepointOperation(DefaultTransactionStatus status, SavepointOperation operation,
+                                         long operationNanos)
+    {
+
+    }
+
+    /**
+     * Invoked after each single synchronization callback, if synchronization timing is
+     * enabled on the transaction manager (see
+     * {@link AbstractPlatformTransactionManager#setSynchronizationTiming})
+     * @param status the status the callbacks are triggered for
+     * @param phase the callback phase
+     * @param synchronization the synchronization invoked
+     * @param callbackNanos the time spent in the callback, including a thrown exception
+     */
+    default void afterSynchronizationCallback(DefaultTransactionStatus status, SynchronizationPhase phase,
+                                              TransactionSynchronization synchronization, long callbackNanos)
+    {
+
+    }
+
+    /**
+     * Invoked once the transaction scope of the given status has been completed
+     * and cleaned up, whatever the outcome
+     * @param status
+     * @param outcome
+     * @param durationNanos the time from the start of {@code getTransaction} to completion
+     */
+    default void afterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome, long durationNanos)
+    {
+
+    }
+}
@@ -0,0 +1,33 @@
+package org.garry.transaction.support;
+
+/**
+ * Outcome of a transaction, as reported to {@link TransactionMonitor}s on completion
+ */
+public enum TransactionOutcome {
+
+    /**
+     * Committed successfully
+     */
+    COMMITTED,
+
+    /**
+     * Rolled back on request or due to an application exception
+     */
+    ROLLED_BACK,
+
+    /**
+     * Rolled back because of a global rollback-only marker while commit was requested,
+     * i.e. an {@link org.garry.transaction.UnexpectedRollbackException} was thrown
+     */
+    UNEXPECTED_ROLLBACK,
+
+    /**
+     * Rolled back because the transaction timed out
+     */
+    TIMED_OUT,
+
+    /**
+     * Commit or rollback itself failed, leaving the outcome possibly unknown
+     */
+    FAILED
+}
@@ -0,0 +1,235 @@
+package org.garry.transaction.support;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * First-level read cache scoped to the current transaction, using the same
+ * {@link TransactionSynchronizationManager} resource binding mechanism as
+ * {@link SimpleTransactionScope}: the cached entries are bound on first use and
+ * dropped in {@code afterCompletion}, and follow suspension and resumption of the transaction.
+ *
+ * Reads are keyed by region, query and arguments. A region groups the queries a write
+ * may affect (typically a table or aggregate name), so a write through
+ * {@link #write(String, Supplier)} or {@link #invalidate(String)} evicts the whole region.
+ * Without active transaction synchronization, every call goes straight to the loader.
+ *
+ * Cached values are shared within the transaction as-is, so they should be immutable
+ */
+public class TransactionScopedReadCache {
+
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * Return the value of the given read, loading it on the first call
+     * within the current transaction
+     * @param region the region the read belongs to
+     * @param query the query (e.g. SQL text)
+     * @param args the query arguments, if any
+     * @param loader the actual read
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(String region, String query, @Nullable Object[] args, Supplier<T> loader)
+    {
+        Assert.notNull(region, "Region must not be null");
+        Assert.notNull(query, "Query must not be null");
+        CachedReadsHolder holder = obtainHolder();
+        if(holder == null)
+        {
+            return loader.get();
+        }
+        Map<ReadKey,Object> regionEntries = holder.regions.computeIfAbsent(region, key -> new HashMap<>());
+        ReadKey readKey = new ReadKey(query, args);
+        Object cached = regionEntries.get(readKey);
+        if(cached != null)
+        {
+            holder.hits++;
+            return (cached == NULL_VALUE ? null : (T) cached);
+        }
+        holder.misses++;
+        T value = loader.get();
+        // Re-obtain the region map: the loader may have invalidated it through a nested write
+        holder.regions.computeIfAbsent(region, key -> new HashMap<>())
+                .put(readKey, (value != null ? value : NULL_VALUE));
+        return value;
+    }
+
+    /**
+     * Perform a write within the current transaction and evict the given region,
+     * also when the write fails
+     * @param region the region affected by the write
+     * @param writer the actual write
+     * @return the result of the writer
+     */
+    public <T> T write(String region, Supplier<T> writer)
+    {
+        try {
+            return writer.get();
+        }
+        finally {
+            invalidate(region);
+        }
+    }
+
+    /**
+     * Evict all reads of the given region in the current transaction
+     * @param region
+     */
+    public void invalidate(String region)
+    {
+        CachedReadsHolder holder = currentHolder();
+        if(holder != null)
+        {
+            holder.regions.remove(region);
+        }
+    }
+
+    /**
+     * Evict a single read in the current transaction
+     * @param region
+     * @param query
+     * @param args
+     */
+    public void invalidate(String region, String query, @Nullable Object[] args)
+    {
+        CachedReadsHolder holder = currentHolder();
+        if(holder != null)
+        {
+            Map<ReadKey,Object> regionEntries = holder.regions.get(region);
+            if(regionEntries != null)
+            {
+                regionEntries.remove(new ReadKey(query, args));
+            }
+        }
+    }
+
+    /**
+     * Evict all reads in the current transaction
+     */
+    public void invalidateAll()
+    {
+        CachedReadsHolder holder = currentHolder();
+        if(holder != null)
+        {
+            holder.regions.clear();
+        }
+    }
+
+    /**
+     * Return the number of reads served from the cache in the current transaction
+     * @return
+     */
+    public int getHitCount()
+    {
+        CachedReadsHolder holder = currentHolder();
+        return (holder != null ? holder.hits : 0);
+    }
+
+    /**
+     * Return the number of reads delegated to the loader in the current transaction
+     * @return
+     */
+    public int getMissCount()
+    {
+        CachedReadsHolder holder = currentHolder();
+        return (holder != null ? holder.misses : 0);
+    }
+
+    @Nullable
+    private CachedReadsHolder currentHolder()
+    {
+        return (CachedReadsHolder) TransactionSynchronizationManager.getResource(this);
+    }
+
+    @Nullable
+    private CachedReadsHolder obtainHolder()
+    {
+        CachedReadsHolder holder = currentHolder();
+        if(holder == null && TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            holder = new CachedReadsHolder();
+            TransactionSynchronizationManager.registerSynchronization(new CleanupSynchronization(holder));
+            TransactionSynchronizationManager.bindResource(this, holder);
+        }
+        return holder;
+    }
+
+    static class CachedReadsHolder
+    {
+        final Map<String,Map<ReadKey,Object>> regions = new HashMap<>();
+
+        int hits;
+
+        int misses;
+    }
+
+    private static final class ReadKey
+    {
+        private final String query;
+
+        @Nullable
+        private final Object[] args;
+
+        private final int hashCode;
+
+        ReadKey(String query, @Nullable Object[] args)
+        {
+            this.query = query;
+            this.args = (args != null && args.length > 0 ? args.clone() : null);
+            this.hashCode = 31 * query.hashCode() + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if(this == other)
+            {
+                return true;
+            }
+            if(!(other instanceof ReadKey))
+            {
+                return false;
+            }
+            ReadKey otherKey = (ReadKey) other;
+            return (this.query.equals(otherKey.query) && Arrays.deepEquals(this.args, otherKey.args));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+    }
+
+    private class CleanupSynchronization extends TransactionSynchronizationAdapter
+    {
+        private final CachedReadsHolder holder;
+
+        public CleanupSynchronization(CachedReadsHolder holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(TransactionScopedReadCache.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(TransactionScopedReadCache.this, this.holder);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionScopedReadCache.this);
+            this.holder.regions.clear();
+        }
+    }
+}
@@ -93,6 +93,20 @@ public interface TransactionSynchronization extends Flushable {
 
     }
 
+    /**
+     * Invoked right after the physical commit of a new transaction, before any
+     * {@code afterCommit} or {@code afterCompletion} callback of any registered synchronization.
+     * Meant for returning pooled resources early, so that they are not held while other
+     * synchronizations perform their after-commit work.
+     * Not invoked for participating transactions, savepoint releases or rollbacks.
+     * Exceptions thrown here are logged but not propagated, since the transaction
+     * has been committed already
+     */
+    default void afterPhysicalCommit()
+    {
+
+    }
+
     /**
      * Invoked after transaction commit/rollback
      * Can perform resource cleanup after transaction completion.
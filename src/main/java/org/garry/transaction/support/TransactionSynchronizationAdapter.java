@@ -43,6 +43,11 @@ public abstract class TransactionSynchronizationAdapter implements TransactionSy
         TransactionSynchronization.super.afterCommit();
     }
 
+    @Override
+    public void afterPhysicalCommit() {
+        TransactionSynchronization.super.afterPhysicalCommit();
+    }
+
     @Override
     public void afterCompletion(int status) {
         TransactionSynchronization.super.afterCompletion(status);
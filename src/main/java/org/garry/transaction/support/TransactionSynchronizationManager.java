@@ -60,6 +60,13 @@ public abstract class TransactionSynchronizationManager {
     private static final ThreadLocal<Integer> currentTransactionIsolationLevel =
             new NamedThreadLocal<>("Current transaction isolation level");
 
+    private static final ThreadLocal<long[]> currentTransactionId = new NamedThreadLocal<long[]>("Current transaction id") {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
     private static final ThreadLocal<Boolean> actualTransactionActive =
             new NamedThreadLocal<>("Actual transaction active");
 
@@ -336,6 +343,25 @@ public abstract class TransactionSynchronizationManager {
         return currentTransactionName.get();
     }
 
+    /**
+     * Expose the id of the current transaction, as obtained from {@link TransactionIdGenerator}.
+     * Called by the transaction manager on transaction begin, suspension, resumption and cleanup
+     * @param transactionId the id, or 0 for none
+     */
+    public static void setCurrentTransactionId(long transactionId) {
+        currentTransactionId.get()[0] = transactionId;
+    }
+
+    /**
+     * Return the id of the current transaction, or 0 if none set, e.g. within an empty
+     * SUPPORTS or NOT_SUPPORTED scope. The id is unique per transaction within the JVM,
+     * e.g. for correlating log output
+     * @return
+     */
+    public static long getCurrentTransactionId() {
+        return currentTransactionId.get()[0];
+    }
+
     /**
      * Expose a read-only flag for the current transaction.
      * Called by the transaction manager on transaction begin and on cleanup.
@@ -408,6 +434,8 @@ public abstract class TransactionSynchronizationManager {
     {
        synchronizations.remove();
        currentTransactionName.remove();
+       // Reset rather than removed, so the slot is not re-created for every transaction
+       currentTransactionId.get()[0] = 0;
        currentTransactionReadOnly.remove();
        currentTransactionIsolationLevel.remove();
        actualTransactionActive.remove();
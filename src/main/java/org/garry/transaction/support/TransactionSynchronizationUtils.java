@@ -99,6 +99,23 @@ public abstract class TransactionSynchronizationUtils {
 
     }
 
+    /**
+     * Trigger {@code afterPhysicalCommit} callbacks on all currently registered synchronizations
+     */
+    public static void triggerAfterPhysicalCommit()
+    {
+        for(TransactionSynchronization synchronization: TransactionSynchronizationManager.getSynchronizations())
+        {
+            try {
+                synchronization.afterPhysicalCommit();
+            }
+            catch (Throwable tsex)
+            {
+                logger.error("TransactionSynchronization.afterPhysicalCommit threw exception",tsex);
+            }
+        }
+    }
+
     /**
      *
      */
@@ -158,6 +175,97 @@ public abstract class TransactionSynchronizationUtils {
        }
     }
 
+    // Timed variants, invoked by AbstractPlatformTransactionManager with synchronization timing
+    // enabled. Same semantics as above, plus one nanoTime pair per callback reported to the monitors
+
+    static void triggerBeforeCommit(boolean readOnly, DefaultTransactionStatus status, TransactionMonitor[] monitors)
+    {
+        for(TransactionSynchronization synchronization: TransactionSynchronizationManager.getSynchronizations())
+        {
+            long start = System.nanoTime();
+            try {
+                synchronization.beforeCommit(readOnly);
+            }
+            finally {
+                notifyCallback(status, monitors, SynchronizationPhase.BEFORE_COMMIT, synchronization, start);
+            }
+        }
+    }
+
+    static void triggerBeforeCompletion(DefaultTransactionStatus status, TransactionMonitor[] monitors)
+    {
+        for(TransactionSynchronization synchronization: TransactionSynchronizationManager.getSynchronizations())
+        {
+            long start = System.nanoTime();
+            try{
+                synchronization.beforeCompletion();
+            }
+            catch (Throwable tsex)
+            {
+                logger.error("TransactionSynchronization.beforeCompletion threw exception",tsex);
+            }
+            notifyCallback(status, monitors, SynchronizationPhase.BEFORE_COMPLETION, synchronization, start);
+        }
+    }
+
+    static void triggerAfterPhysicalCommit(DefaultTransactionStatus status, TransactionMonitor[] monitors)
+    {
+        for(TransactionSynchronization synchronization: TransactionSynchronizationManager.getSynchronizations())
+        {
+            long start = System.nanoTime();
+            try {
+                synchronization.afterPhysicalCommit();
+            }
+            catch (Throwable tsex)
+            {
+                logger.error("TransactionSynchronization.afterPhysicalCommit threw exception",tsex);
+            }
+            notifyCallback(status, monitors, SynchronizationPhase.AFTER_PHYSICAL_COMMIT, synchronization, start);
+        }
+    }
+
+    static void triggerAfterCommit(DefaultTransactionStatus status, TransactionMonitor[] monitors)
+    {
+        for(TransactionSynchronization synchronization: TransactionSynchronizationManager.getSynchronizations())
+        {
+            long start = System.nanoTime();
+            try {
+                synchronization.afterCommit();
+            }
+            finally {
+                notifyCallback(status, monitors, SynchronizationPhase.AFTER_COMMIT, synchronization, start);
+            }
+        }
+    }
+
+    static void invokeAfterCompletion(List<TransactionSynchronization> synchronizations, int completionStatus,
+                                      DefaultTransactionStatus status, TransactionMonitor[] monitors)
+    {
+        for(TransactionSynchronization synchronization: synchronizations)
+        {
+            long start = System.nanoTime();
+            try {
+                synchronization.afterCompletion(completionStatus);
+            }
+            catch (Throwable tsex)
+            {
+                logger.error("TransactionSynchronization.afterCompletion threw exception",tsex);
+            }
+            notifyCallback(status, monitors, SynchronizationPhase.AFTER_COMPLETION, synchronization, start);
+        }
+    }
+
+    private static void notifyCallback(DefaultTransactionStatus status, TransactionMonitor[] monitors,
+                                       SynchronizationPhase phase, TransactionSynchronization synchronization,
+                                       long start)
+    {
+        long callbackNanos = System.nanoTime() - start;
+        for(TransactionMonitor monitor: monitors)
+        {
+            monitor.afterSynchronizationCallback(status, phase, synchronization, callbackNanos);
+        }
+    }
+
     /**
      * todo ???
      * Inner class to avoid hard-code dependency on AOP module
@@ -26,7 +26,7 @@ public class TransactionTemplate extends DefaultTransactionDefinition implements
 
     }
 
-    public TransactionTemplate(PlatformTransactionManager platformTransactionManager)
+    public TransactionTemplate(PlatformTransactionManager transactionManager)
     {
         this.transactionManager = transactionManager;
     }
@@ -91,6 +91,10 @@ public class TransactionTemplate extends DefaultTransactionDefinition implements
         Assert.state(this.transactionManager != null, "No PlatformTransactionManager set");
 
         logger.debug("Initiating transaction rollback on application exception",ex);
+        if(status instanceof DefaultTransactionStatus)
+        {
+            ((DefaultTransactionStatus) status).setRollbackCause(ex);
+        }
 
         try {
             this.transactionManager.rollback(status);
@@ -0,0 +1,275 @@
+package org.garry.transaction.tracing;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link SpanExporter} appending spans to a file, one JSON object per line.
+ *
+ * Spans are queued and written by a background thread, so the transaction's thread
+ * never waits for I/O. When the queue is full, spans are dropped and counted
+ * (see {@link #getDroppedCount()}). The writer thread is started by
+ * {@link #afterPropertiesSet()}; {@link #destroy()} writes the remaining spans and closes the file
+ */
+public class JsonLinesSpanExporter implements SpanExporter, InitializingBean, DisposableBean {
+
+    /**
+     * Marker waking up the writer thread on shutdown. Interrupting it instead
+     * would close the underlying interruptible file channel
+     */
+    private static final Span SHUTDOWN = new Span(0, 0, 0, "shutdown", 0, 0, "", Collections.emptyMap());
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private final Path file;
+
+    private int queueCapacity = 8192;
+
+    private long flushIntervalMillis = 1000;
+
+    @Nullable
+    private volatile BlockingQueue<Span> queue;
+
+    @Nullable
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * Create a new JsonLinesSpanExporter appending to the given file
+     * @param file
+     */
+    public JsonLinesSpanExporter(Path file)
+    {
+        Assert.notNull(file, "File must not be null");
+        this.file = file;
+    }
+
+    /**
+     * Set the maximum number of spans waiting to be written. Default is 8192
+     * @param queueCapacity
+     */
+    public void setQueueCapacity(int queueCapacity)
+    {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Set the maximum time written spans may stay in the write buffer
+     * before being flushed to the file. Default is 1000
+     * @param flushIntervalMillis
+     */
+    public void setFlushIntervalMillis(long flushIntervalMillis)
+    {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException
+    {
+        Assert.isTrue(this.queueCapacity > 0, "Queue capacity must be positive");
+        Assert.isTrue(this.flushIntervalMillis > 0, "Flush interval must be positive");
+        if(this.writerThread != null)
+        {
+            return;
+        }
+        Writer writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        BlockingQueue<Span> queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.running = true;
+        this.queue = queue;
+        this.writerThread = new Thread(() -> writeSpans(queue, writer), "JsonLinesSpanExporter");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException
+    {
+        Thread writerThread = this.writerThread;
+        if(writerThread != null)
+        {
+            this.running = false;
+            BlockingQueue<Span> queue = this.queue;
+            if(queue != null)
+            {
+                // If the queue is full, the writer is busy and will notice the flag anyway
+                queue.offer(SHUTDOWN);
+            }
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            this.writerThread = null;
+            this.queue = null;
+        }
+    }
+
+    @Override
+    public void export(Span span)
+    {
+        BlockingQueue<Span> queue = this.queue;
+        if(queue == null || !queue.offer(span))
+        {
+            this.droppedCount.increment();
+        }
+    }
+
+    /**
+     * Return the number of spans dropped because the queue was full or the exporter not running
+     * @return
+     */
+    public long getDroppedCount()
+    {
+        return this.droppedCount.sum();
+    }
+
+    private void writeSpans(BlockingQueue<Span> queue, Writer writer)
+    {
+        StringBuilder line = new StringBuilder(256);
+        List<Span> batch = new ArrayList<>(256);
+        try {
+            while (this.running || !queue.isEmpty())
+            {
+                Span first;
+                try {
+                    first = (this.running ? queue.poll(this.flushIntervalMillis, TimeUnit.MILLISECONDS) : queue.poll());
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if(first != null)
+                {
+                    batch.add(first);
+                    queue.drainTo(batch, 255);
+                    for(Span span: batch)
+                    {
+                        if(span == SHUTDOWN)
+                        {
+                            continue;
+                        }
+                        line.setLength(0);
+                        appendJson(span, line);
+                        line.append('\n');
+                        writer.append(line);
+                    }
+                    batch.clear();
+                }
+                if(queue.isEmpty())
+                {
+                    writer.flush();
+                }
+            }
+        }
+        catch (IOException ex) {
+            logger.error("Failed to write spans to " + this.file + ", further spans are dropped", ex);
+            this.queue = null;
+        }
+        finally {
+            try {
+                writer.flush();
+                writer.close();
+            }
+            catch (IOException ex) {
+                logger.debug("Could not close span file " + this.file, ex);
+            }
+        }
+    }
+
+    /**
+     * Append the JSON representation of the given span to the given builder
+     * @param span
+     * @param json
+     */
+    static void appendJson(Span span, StringBuilder json)
+    {
+        json.append("{\"traceId\":").append(span.getTraceId())
+                .append(",\"spanId\":").append(span.getSpanId())
+                .append(",\"parentSpanId\":").append(span.getParentSpanId())
+                .append(",\"name\":");
+        appendString(span.getName(), json);
+        json.append(",\"startEpochNanos\":").append(span.getStartEpochNanos())
+                .append(",\"durationNanos\":").append(span.getDurationNanos())
+                .append(",\"thread\":");
+        appendString(span.getThreadName(), json);
+        if(!span.getAttributes().isEmpty())
+        {
+            json.append(",\"attributes\":{");
+            boolean first = true;
+            for(Map.Entry<String,String> attribute: span.getAttributes().entrySet())
+            {
+                if(!first)
+                {
+                    json.append(',');
+                }
+                first = false;
+                appendString(attribute.getKey(), json);
+                json.append(':');
+                appendString(attribute.getValue(), json);
+            }
+            json.append('}');
+        }
+        json.append('}');
+    }
+
+    private static void appendString(@Nullable String value, StringBuilder json)
+    {
+        if(value == null)
+        {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for(int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20)
+                    {
+                        json.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,117 @@
+package org.garry.transaction.tracing;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link SpanExporter} keeping the most recent spans in memory, e.g. for a
+ * diagnostics endpoint rendering waterfall views of recent transactions.
+ *
+ * Export is lock-free: a slot is claimed through a single atomic increment and
+ * the oldest span is overwritten once the buffer is full. Reads are best effort,
+ * spans exported concurrently with {@link #getSpans()} may or may not be included
+ */
+public class RingBufferSpanExporter implements SpanExporter {
+
+    private final AtomicReferenceArray<Span> buffer;
+
+    private final int mask;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Create a new RingBufferSpanExporter keeping the last 4096 spans
+     */
+    public RingBufferSpanExporter()
+    {
+        this(4096);
+    }
+
+    /**
+     * Create a new RingBufferSpanExporter
+     * @param capacity the number of spans to keep, rounded up to a power of two
+     */
+    public RingBufferSpanExporter(int capacity)
+    {
+        Assert.isTrue(capacity > 0 && capacity <= (1 << 30), "Capacity must be between 1 and 2^30");
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity)
+        {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void export(Span span)
+    {
+        long slot = this.sequence.getAndIncrement();
+        this.buffer.set((int) (slot & this.mask), span);
+    }
+
+    /**
+     * Return the spans currently held, oldest first
+     * @return
+     */
+    public List<Span> getSpans()
+    {
+        long end = this.sequence.get();
+        long start = Math.max(0, end - this.buffer.length());
+        List<Span> spans = new ArrayList<>((int) (end - start));
+        for(long slot = start; slot < end; slot++)
+        {
+            Span span = this.buffer.get((int) (slot & this.mask));
+            if(span != null)
+            {
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Return the spans of the given trace currently held, oldest first
+     * @param traceId
+     * @return
+     */
+    public List<Span> getSpans(long traceId)
+    {
+        List<Span> spans = getSpans();
+        spans.removeIf(span -> span.getTraceId() != traceId);
+        return spans;
+    }
+
+    /**
+     * Return the number of spans exported so far
+     * @return
+     */
+    public long getExportedCount()
+    {
+        return this.sequence.get();
+    }
+
+    /**
+     * Return the number of spans overwritten so far
+     * @return
+     */
+    public long getOverwrittenCount()
+    {
+        return Math.max(0, this.sequence.get() - this.buffer.length());
+    }
+
+    /**
+     * Drop all spans currently held
+     */
+    public void clear()
+    {
+        for(int i = 0; i < this.buffer.length(); i++)
+        {
+            this.buffer.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.garry.transaction.tracing;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable finished span of a traced transaction: the transaction itself
+ * (the root span) or one of its steps, such as begin, a synchronization phase,
+ * a single synchronization callback, the physical commit or rollback, or a savepoint operation.
+ *
+ * Spans of a transaction share its trace id; a transaction started while another one is
+ * suspended on the same thread (e.g. {@code PROPAGATION_REQUIRES_NEW}) joins the trace of
+ * the suspended one, its root span being a child of the suspended transaction's root span
+ */
+public final class Span {
+
+    private final long traceId;
+
+    private final long spanId;
+
+    private final long parentSpanId;
+
+    private final String name;
+
+    private final long startEpochNanos;
+
+    private final long durationNanos;
+
+    private final String threadName;
+
+    private final Map<String,String> attributes;
+
+    Span(long traceId, long spanId, long parentSpanId, String name, long startEpochNanos, long durationNanos,
+         String threadName, Map<String,String> attributes)
+    {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startEpochNanos = startEpochNanos;
+        this.durationNanos = durationNanos;
+        this.threadName = threadName;
+        this.attributes = (attributes.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(attributes));
+    }
+
+    /**
+     * Return the trace id, i.e. the id of the outermost transaction of the trace
+     * @return
+     */
+    public long getTraceId() {
+        return this.traceId;
+    }
+
+    public long getSpanId() {
+        return this.spanId;
+    }
+
+    /**
+     * Return the id of the parent span, or 0 for the root span of a trace
+     * @return
+     */
+    public long getParentSpanId() {
+        return this.parentSpanId;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Return the start time in nanoseconds since the epoch. Derived from a single
+     * wall-clock reading per transaction, so spans of a transaction are consistently
+     * positioned relative to each other
+     * @return
+     */
+    public long getStartEpochNanos() {
+        return this.startEpochNanos;
+    }
+
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+    public String getThreadName() {
+        return this.threadName;
+    }
+
+    public Map<String,String> getAttributes() {
+        return this.attributes;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " [trace=" + this.traceId + ", span=" + this.spanId + ", parent=" + this.parentSpanId +
+                ", duration=" + this.durationNanos + "ns" + (this.attributes.isEmpty() ? "" : ", " + this.attributes) + "]";
+    }
+}
@@ -0,0 +1,16 @@
+package org.garry.transaction.tracing;
+
+/**
+ * Receiver of finished {@link Span}s from a {@link TransactionTracingMonitor}.
+ *
+ * Invoked synchronously on the transaction's thread, so implementations should
+ * hand spans off quickly and must not throw
+ */
+public interface SpanExporter {
+
+    /**
+     * Export a finished span. Child spans are exported before their parent
+     * @param span
+     */
+    void export(Span span);
+}
@@ -0,0 +1,263 @@
+package org.garry.transaction.tracing;
+
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.SavepointOperation;
+import org.garry.transaction.support.SynchronizationPhase;
+import org.garry.transaction.support.TransactionIdGenerator;
+import org.garry.transaction.support.TransactionMonitor;
+import org.garry.transaction.support.TransactionOutcome;
+import org.garry.transaction.support.TransactionSynchronization;
+import org.springframework.core.Constants;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link TransactionMonitor} recording each physical transaction as a tree of {@link Span}s
+ * handed to a {@link SpanExporter}:
+ * <ul>
+ *     <li>a root span from the start of {@code getTransaction} to completion</li>
+ *     <li>"begin", "commit" and "rollback" for {@code getTransaction}, {@code doCommit} and {@code doRollback}</li>
+ *     <li>one span per synchronization phase, e.g. "beforeCommit", with one child span per
+ *     synchronization callback, named after the synchronization class</li>
+ *     <li>"savepoint.create", "savepoint.release" and "savepoint.rollback" for nested transactions</li>
+ * </ul>
+ *
+ * Synchronization spans require {@link org.garry.transaction.support.AbstractPlatformTransactionManager#setSynchronizationTiming
+ * synchronization timing} to be enabled on the transaction manager. Participating scopes
+ * are not traced separately. The trace id is the {@link DefaultTransactionStatus#getTransactionId()
+ * transaction id} of the outermost transaction on the thread.
+ *
+ * Usage: {@code transactionManager.addTransactionMonitor(new TransactionTracingMonitor(exporter))}
+ */
+public class TransactionTracingMonitor implements TransactionMonitor {
+
+    private static final Constants constants = new Constants(TransactionDefinition.class);
+
+    private static final String[] PHASE_SPAN_NAMES = {
+            "beforeCommit", "beforeCompletion", "afterPhysicalCommit", "afterCommit", "afterCompletion"};
+
+    private static final String[] SAVEPOINT_SPAN_NAMES = {
+            "savepoint.create", "savepoint.release", "savepoint.rollback"};
+
+    private final SpanExporter exporter;
+
+    /**
+     * Innermost traced transaction of the current thread
+     */
+    private final ThreadLocal<TraceState> currentTrace = new NamedThreadLocal<>("Current transaction trace");
+
+    /**
+     * Create a new TransactionTracingMonitor
+     * @param exporter the exporter to hand finished spans to
+     */
+    public TransactionTracingMonitor(SpanExporter exporter)
+    {
+        Assert.notNull(exporter, "SpanExporter must not be null");
+        this.exporter = exporter;
+    }
+
+    @Override
+    public void afterBegin(DefaultTransactionStatus status, long beginNanos)
+    {
+        if(!status.isNewTransaction())
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        TraceState outer = this.currentTrace.get();
+        long startNanos = status.getStartNanos();
+        long startEpochNanos = System.currentTimeMillis() * 1_000_000L - (now - startNanos);
+        long traceId;
+        if(outer != null)
+        {
+            traceId = outer.traceId;
+        }
+        else
+        {
+            traceId = (status.getTransactionId() != 0 ? status.getTransactionId() : TransactionIdGenerator.nextId());
+        }
+        TraceState state = new TraceState(traceId, TransactionIdGenerator.nextId(), startNanos, startEpochNanos, outer);
+        status.setMonitorAttribute(this, state);
+        this.currentTrace.set(state);
+        exportChild(state, state.rootSpanId, "begin", startNanos, beginNanos, Collections.emptyMap());
+    }
+
+    @Override
+    public void afterSynchronizationCallback(DefaultTransactionStatus status, SynchronizationPhase phase,
+                                             TransactionSynchronization synchronization, long callbackNanos)
+    {
+        TraceState state = (TraceState) status.getMonitorAttribute(this);
+        if(state == null)
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        long callbackStart = now - callbackNanos;
+        if(state.phase != phase)
+        {
+            closePhase(state);
+            state.phase = phase;
+            state.phaseSpanId = TransactionIdGenerator.nextId();
+            state.phaseStartNanos = callbackStart;
+        }
+        state.phaseEndNanos = now;
+        exportChild(state, state.phaseSpanId, synchronization.getClass().getName(), callbackStart, callbackNanos,
+                Collections.emptyMap());
+    }
+
+    @Override
+    public void afterCommit(DefaultTransactionStatus status, long commitNanos)
+    {
+        exportStep(status, "commit", commitNanos);
+    }
+
+    @Override
+    public void afterRollback(DefaultTransactionStatus status, long rollbackNanos)
+    {
+        exportStep(status, "rollback", rollbackNanos);
+    }
+
+    @Override
+    public void afterSavepointOperation(DefaultTransactionStatus status, SavepointOperation operation,
+                                        long operationNanos)
+    {
+        // Nested transactions are not traced themselves: attach to the enclosing physical transaction
+        TraceState state = this.currentTrace.get();
+        if(state == null)
+        {
+            return;
+        }
+        closePhase(state);
+        Map<String,String> attributes = Collections.emptyMap();
+        TransactionDefinition definition = status.getDefinition();
+        if(definition != null && definition.getName() != null)
+        {
+            attributes = Collections.singletonMap("transactionName", definition.getName());
+        }
+        exportChild(state, state.rootSpanId, SAVEPOINT_SPAN_NAMES[operation.ordinal()],
+                System.nanoTime() - operationNanos, operationNanos, attributes);
+    }
+
+    @Override
+    public void afterCompletion(DefaultTransactionStatus status, TransactionOutcome outcome, long durationNanos)
+    {
+        TraceState state = (TraceState) status.getMonitorAttribute(this);
+        if(state == null)
+        {
+            return;
+        }
+        status.setMonitorAttribute(this, null);
+        closePhase(state);
+        if(this.currentTrace.get() == state)
+        {
+            if(state.outer != null)
+            {
+                this.currentTrace.set(state.outer);
+            }
+            else
+            {
+                this.currentTrace.remove();
+            }
+        }
+        Map<String,String> attributes = new HashMap<>(8);
+        TransactionDefinition definition = status.getDefinition();
+        if(definition != null)
+        {
+            if(definition.getName() != null)
+            {
+                attributes.put("transactionName", definition.getName());
+            }
+            attributes.put("propagation", constants.toCode(definition.getPropagationBehavior(), "PROPAGATION_"));
+        }
+        attributes.put("transactionId", Long.toString(status.getTransactionId()));
+        attributes.put("readOnly", Boolean.toString(status.isReadOnly()));
+        attributes.put("outcome", outcome.name());
+        if(status.getRollbackCause() != null)
+        {
+            attributes.put("rollbackCause", status.getRollbackCause().getClass().getName());
+        }
+        this.exporter.export(new Span(state.traceId, state.rootSpanId,
+                (state.outer != null ? state.outer.rootSpanId : 0), "transaction",
+                state.startEpochNanos, durationNanos, Thread.currentThread().getName(), attributes));
+    }
+
+    private void exportStep(DefaultTransactionStatus status, String name, long nanos)
+    {
+        TraceState state = (TraceState) status.getMonitorAttribute(this);
+        if(state != null)
+        {
+            closePhase(state);
+            exportChild(state, state.rootSpanId, name, System.nanoTime() - nanos, nanos, Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Export the span of the synchronization phase in progress, if any
+     * @param state
+     */
+    private void closePhase(TraceState state)
+    {
+        SynchronizationPhase phase = state.phase;
+        if(phase != null)
+        {
+            exportChild(state, state.rootSpanId, state.phaseSpanId, PHASE_SPAN_NAMES[phase.ordinal()],
+                    state.phaseStartNanos, state.phaseEndNanos - state.phaseStartNanos, Collections.emptyMap());
+            state.phase = null;
+        }
+    }
+
+    private void exportChild(TraceState state, long parentSpanId, String name, long startNanos, long durationNanos,
+                             Map<String,String> attributes)
+    {
+        exportChild(state, parentSpanId, TransactionIdGenerator.nextId(), name, startNanos, durationNanos, attributes);
+    }
+
+    private void exportChild(TraceState state, long parentSpanId, long spanId, String name, long startNanos,
+                             long durationNanos, Map<String,String> attributes)
+    {
+        this.exporter.export(new Span(state.traceId, spanId, parentSpanId, name,
+                state.startEpochNanos + (startNanos - state.startNanos), durationNanos,
+                Thread.currentThread().getName(), attributes));
+    }
+
+    /**
+     * Tracing state of a physical transaction
+     */
+    private static final class TraceState
+    {
+        final long traceId;
+
+        final long rootSpanId;
+
+        final long startNanos;
+
+        final long startEpochNanos;
+
+        @Nullable
+        final TraceState outer;
+
+        @Nullable
+        SynchronizationPhase phase;
+
+        long phaseSpanId;
+
+        long phaseStartNanos;
+
+        long phaseEndNanos;
+
+        TraceState(long traceId, long rootSpanId, long startNanos, long startEpochNanos, @Nullable TraceState outer)
+        {
+            this.traceId = traceId;
+            this.rootSpanId = rootSpanId;
+            this.startNanos = startNanos;
+            this.startEpochNanos = startEpochNanos;
+            this.outer = outer;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.garry.transaction;
+
+import org.garry.transaction.benchmark.NoOpTransactionManager;
+import org.garry.transaction.benchmark.SimpleMethodInvocation;
+import org.garry.transaction.interceptor.NameMatchTransactionAttributeSource;
+import org.garry.transaction.interceptor.RuleBasedTransactionAttribute;
+import org.garry.transaction.interceptor.TransactionInterceptor;
+import org.garry.transaction.support.DefaultTransactionDefinition;
+import org.garry.transaction.support.TransactionSynchronizationManager;
+import org.garry.transaction.support.TransactionTemplate;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation budgets of the hot transaction paths: measures the heap bytes allocated per
+ * operation through {@link com.sun.management.ThreadMXBean}, so that an accidental extra
+ * wrapper object on the commit path fails the build.
+ *
+ * Each operation is warmed up first, so that the JIT had the chance to eliminate
+ * allocations through escape analysis, as it would in production. Budgets are the values
+ * measured on a 64-bit HotSpot JVM (JDK 17, compressed oops) plus rounding slack, so that a
+ * single extra object exceeds them; the interceptor path varies by a few dozen bytes
+ * between runs due to reflective invocation and has a correspondingly larger margin.
+ * The optional SLF4J MDC entry for the transaction id is switched off, so that the budgets
+ * do not depend on SLF4J being present. Lower a budget when an allocation is removed
+ */
+class AllocationBudgetTests {
+
+    private static final int WARMUP_OPERATIONS = 200_000;
+
+    private static final int MEASURED_OPERATIONS = 100_000;
+
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @BeforeAll
+    static void enableAllocationAccounting()
+    {
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(),
+                "Thread allocation accounting not supported by this JVM");
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void templateExecuteWithNewTransaction() throws Throwable
+    {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager());
+        assertAllocationWithinBudget(568, () -> transactionTemplate.execute(status -> Boolean.TRUE));
+    }
+
+    @Test
+    void templateExecuteParticipating() throws Throwable
+    {
+        NoOpTransactionManager transactionManager = transactionManager();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        TransactionStatus outer = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            assertAllocationWithinBudget(144, () -> transactionTemplate.execute(status -> Boolean.TRUE));
+        }
+        finally {
+            transactionManager.commit(outer);
+        }
+    }
+
+    @Test
+    void interceptorInvokeNonTransactionalMethod() throws Throwable
+    {
+        NameMatchTransactionAttributeSource attributeSource = new NameMatchTransactionAttributeSource();
+        attributeSource.addTransactionalMethod("update*", new RuleBasedTransactionAttribute());
+        TransactionInterceptor interceptor = new TransactionInterceptor(transactionManager(), attributeSource);
+        interceptor.afterPropertiesSet();
+        SimpleMethodInvocation invocation =
+                new SimpleMethodInvocation(new DefaultService(), Service.class.getMethod("find", int.class));
+        assertAllocationWithinBudget(720, () -> interceptor.invoke(invocation));
+    }
+
+    @Test
+    void resourceBindAndUnbind() throws Throwable
+    {
+        Object key = new Object();
+        Object value = new Object();
+        assertAllocationWithinBudget(200, () -> {
+            TransactionSynchronizationManager.bindResource(key, value);
+            TransactionSynchronizationManager.unbindResource(key);
+        });
+    }
+
+    /**
+     * Create the transaction manager under test, without the MDC entry for the transaction id
+     * @return
+     */
+    private static NoOpTransactionManager transactionManager()
+    {
+        NoOpTransactionManager transactionManager = new NoOpTransactionManager();
+        transactionManager.setTransactionIdMdcKey(null);
+        return transactionManager;
+    }
+
+    private static void assertAllocationWithinBudget(long budgetBytes, Operation operation) throws Throwable
+    {
+        for(int i = 0; i < WARMUP_OPERATIONS; i++)
+        {
+            operation.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for(int i = 0; i < MEASURED_OPERATIONS; i++)
+        {
+            operation.run();
+        }
+        long bytesPerOperation = (threadMXBean.getThreadAllocatedBytes(threadId) - before) / MEASURED_OPERATIONS;
+        assertTrue(bytesPerOperation <= budgetBytes,
+                () -> bytesPerOperation + " bytes allocated per operation, budget " + budgetBytes);
+    }
+
+    /**
+     * Operation measured against a budget
+     */
+    private interface Operation
+    {
+        void run() throws Throwable;
+    }
+
+    public interface Service
+    {
+        int find(int value);
+    }
+
+    static class DefaultService implements Service
+    {
+        @Override
+        public int find(int value) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.garry.transaction.benchmark;
+
+import org.garry.transaction.SavepointManager;
+import org.garry.transaction.TransactionDefinition;
+import org.garry.transaction.TransactionException;
+import org.garry.transaction.support.AbstractPlatformTransactionManager;
+import org.garry.transaction.support.DefaultTransactionStatus;
+import org.garry.transaction.support.ResourceHolderSupport;
+import org.garry.transaction.support.SmartTransactionObject;
+import org.garry.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction manager without an underlying resource, so that benchmarks and allocation
+ * tests measure the cost of {@link AbstractPlatformTransactionManager} itself: resource
+ * binding, synchronization, suspension and savepoint handling work as with a
+ * DataSource-based manager, but begin/commit/rollback do nothing.
+ *
+ * Lives in the test source set, which the jmh source set includes
+ */
+public class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+    public NoOpTransactionManager()
+    {
+        setNestedTransactionAllowed(true);
+    }
+
+    @Override
+    protected Object doGetTransaction() throws TransactionException {
+        return new NoOpTransaction((NoOpResourceHolder) TransactionSynchronizationManager.getResource(this));
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) throws TransactionException {
+        NoOpTransaction tx = (NoOpTransaction) transaction;
+        return (tx.holder != null && tx.holder.active);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) throws TransactionException {
+        NoOpTransaction tx = (NoOpTransaction) transaction;
+        if(tx.holder == null)
+        {
+            tx.holder = new NoOpResourceHolder();
+            tx.newHolder = true;
+        }
+        tx.holder.active = true;
+        prepareResourceHolder(tx.holder, definition);
+        tx.holder.setSynchronizedWithTransaction(true);
+        if(tx.newHolder)
+        {
+            TransactionSynchronizationManager.bindResource(this, tx.holder);
+        }
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) throws TransactionException {
+        ((NoOpTransaction) transaction).holder = null;
+        return TransactionSynchronizationManager.unbindResource(this);
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) throws TransactionException {
+        TransactionSynchronizationManager.bindResource(this, suspendedResources);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) throws TransactionException {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) throws TransactionException {
+    }
+
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) throws TransactionException {
+        ((NoOpTransaction) status.getTransaction()).holder.setRollbackOnly();
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        NoOpTransaction tx = (NoOpTransaction) transaction;
+        if(tx.newHolder)
+        {
+            TransactionSynchronizationManager.unbindResource(this);
+        }
+        tx.holder.active = false;
+        tx.holder.clear();
+    }
+
+    static class NoOpResourceHolder extends ResourceHolderSupport
+    {
+        boolean active;
+    }
+
+    static class NoOpTransaction implements SmartTransactionObject, SavepointManager
+    {
+        NoOpResourceHolder holder;
+
+        boolean newHolder;
+
+        NoOpTransaction(NoOpResourceHolder holder)
+        {
+            this.holder = holder;
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return (this.holder != null && this.holder.isRollbackOnly());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Object createSavepoint() throws TransactionException {
+            return new Object();
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) throws TransactionException {
+            this.holder.resetRollbackOnly();
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) throws TransactionException {
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.garry.transaction.benchmark;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+
+/**
+ * Minimal reusable invocation calling straight through to the target with the single
+ * argument {@code 1}, so that interceptor benchmarks and allocation tests measure the
+ * interceptor rather than the invocation.
+ *
+ * Lives in the test source set, which the jmh source set includes
+ */
+public class SimpleMethodInvocation implements MethodInvocation {
+
+    private final Object target;
+
+    private final Method method;
+
+    private final Object[] arguments = {1};
+
+    public SimpleMethodInvocation(Object target, Method method)
+    {
+        this.target = target;
+        this.method = method;
+    }
+
+    @Override
+    public Method getMethod() {
+        return this.method;
+    }
+
+    @Override
+    public Object[] getArguments() {
+        return this.arguments;
+    }
+
+    @Override
+    public Object proceed() throws Throwable {
+        return this.method.invoke(this.target, this.arguments);
+    }
+
+    @Override
+    public Object getThis() {
+        return this.target;
+    }
+
+    @Override
+    public AccessibleObject getStaticPart() {
+        return this.method;
+    }
+}